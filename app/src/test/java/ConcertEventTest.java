@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcertEventTest {
+    private static final int USERS = 500;
+    private static final int SONGS = 8;
+
+    @Test
+    void countsParallelBallotsExactlyOncePerListener() throws Exception {
+        DataStore store = new DataStore();
+        ConcertEvent event = store.createEvent("Паралельна подія");
+        for (int i = 0; i < SONGS; i++) {
+            event.addSong(new Song("Пісня " + i, "Гурт " + i % 3, 4));
+        }
+        event.setMaxVoteLimit(3);
+        User[] users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            store.registerUser("listener" + i, "pass");
+            users[i] = store.findUser("listener" + i, "pass");
+        }
+        int[] songIds = event.songs().stream().mapToInt(song -> song.id).toArray();
+
+        List<int[]> ballots = new ArrayList<>();
+        List<Future<BallotResult>> results = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = users[i];
+                    int first = (i + attempt) % SONGS;
+                    int[] ballot = {songIds[first], songIds[(first + 1) % SONGS], songIds[(first + 3) % SONGS]};
+                    ballots.add(ballot);
+                    results.add(pool.submit(() -> event.castBallot(user, ballot)));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        int[] expected = new int[SONGS];
+        int[] accepted = new int[USERS];
+        for (int k = 0; k < results.size(); k++) {
+            BallotResult result = results.get(k).get();
+            if (result == BallotResult.ACCEPTED) {
+                accepted[k % USERS]++;
+                for (int songId : ballots.get(k)) {
+                    expected[indexOf(songIds, songId)]++;
+                }
+            } else {
+                assertEquals(BallotResult.ALREADY_VOTED, result);
+            }
+        }
+        for (int i = 0; i < USERS; i++) {
+            assertEquals(1, accepted[i], "listener" + i);
+            assertTrue(event.hasVoted(users[i]));
+        }
+        for (Song song : event.songs()) {
+            assertEquals(expected[indexOf(songIds, song.id)], song.votes, song.title);
+        }
+        assertEquals(USERS, event.ballotsAccepted());
+        assertTrue(event.audit().clean());
+    }
+
+    @Test
+    void viewsTakenDuringVotingAreConsistent() throws Exception {
+        DataStore store = new DataStore();
+        ConcertEvent event = store.createEvent("Зрізи під час голосування");
+        for (int i = 0; i < SONGS; i++) {
+            event.addSong(new Song("Пісня " + i, "Гурт", 4));
+        }
+        event.setMaxVoteLimit(2);
+        User[] users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            store.registerUser("listener" + i, "pass");
+            users[i] = store.findUser("listener" + i, "pass");
+        }
+        int[] songIds = event.songs().stream().mapToInt(song -> song.id).toArray();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<BallotResult>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < USERS; i++) {
+                User user = users[i];
+                int[] ballot = {songIds[i % SONGS], songIds[(i + 1) % SONGS]};
+                results.add(pool.submit(() -> event.castBallot(user, ballot)));
+            }
+            boolean done = false;
+            while (!done) {
+                done = results.stream().allMatch(Future::isDone);
+                EventView view = event.view();
+                int total = 0;
+                for (int votes : view.votes) {
+                    total += votes;
+                }
+                assertEquals(2 * view.ballotsAccepted, total);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(USERS, event.view().ballotsAccepted);
+    }
+
+    private static int indexOf(int[] ids, int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        throw new AssertionError(id);
+    }
+}
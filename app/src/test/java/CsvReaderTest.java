@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvReaderTest {
+
+    @Test
+    void readsQuotedFieldsWithEscapedQuotesAndLineBreaks() throws IOException {
+        List<List<String>> records = read("назва,виконавець,тривалість\r\n"
+                + "\"Пісня, яка \"\"ллється\"\"\",Гурт,4\r\n"
+                + "\"Два\nрядки\",\"\",5\n");
+
+        assertEquals(List.of("назва", "виконавець", "тривалість"), records.get(0));
+        assertEquals(List.of("Пісня, яка \"ллється\"", "Гурт", "4"), records.get(1));
+        assertEquals(List.of("Два\nрядки", "", "5"), records.get(2));
+        assertEquals(3, records.size());
+    }
+
+    @Test
+    void skipsByteOrderMark() throws IOException {
+        List<List<String>> records = read("\uFEFFlogin,password\nuser,secret");
+
+        assertEquals(List.of("login", "password"), records.get(0));
+        assertEquals(List.of("user", "secret"), records.get(1));
+    }
+
+    @Test
+    void detectsSemicolonFromFirstLine() throws IOException {
+        List<List<String>> records = read("\uFEFFназва;виконавець;тривалість\n\"Ой, у лузі\";Народна;3\n");
+
+        assertEquals(List.of("Ой, у лузі", "Народна", "3"), records.get(1));
+    }
+
+    @Test
+    void ignoresDelimitersInsideQuotesWhenDetecting() throws IOException {
+        List<List<String>> records = read("\"a;b;c\",d\n1,2\n");
+
+        assertEquals(List.of("a;b;c", "d"), records.get(0));
+        assertEquals(List.of("1", "2"), records.get(1));
+    }
+
+    @Test
+    void readsVeryLongFirstLine() throws IOException {
+        String longTitle = "x".repeat(CsvReader.MAX_FIELD_LENGTH + 10);
+        try (CsvReader csv = new CsvReader(new BufferedReader(new StringReader(longTitle + ",a\nb,c\n")))) {
+            List<String> first = csv.next();
+            assertTrue(csv.truncated());
+            assertEquals(CsvReader.MAX_FIELD_LENGTH, first.get(0).length());
+            assertEquals(List.of("b", "c"), csv.next());
+            assertFalse(csv.truncated());
+            assertEquals(2, csv.recordLine());
+        }
+    }
+
+    @Test
+    void capsFieldsPerRecord() throws IOException {
+        try (CsvReader csv = new CsvReader(new BufferedReader(new StringReader("1,".repeat(1_000) + "\n1,2\n")))) {
+            assertEquals(CsvReader.MAX_FIELDS, csv.next().size());
+            assertTrue(csv.truncated());
+            assertEquals(List.of("1", "2"), csv.next());
+        }
+    }
+
+    @Test
+    void importsValidRowsAndReportsRejectedOnes() throws IOException {
+        DataStore store = new DataStore();
+        String text = "title;artist;minutes\nПерша;Гурт;4\n;Гурт;3\nДруга;Гурт;нуль\nТретя;Гурт\n\nЧетверта;Гурт;5\n";
+        List<Integer> batches = new ArrayList<>();
+        CsvImporter.Report report = CsvImporter.importSongs(new BufferedReader(new StringReader(text)),
+                store.defaultEvent(), batches::add);
+
+        assertEquals(2, report.imported);
+        assertEquals(3, report.rejected);
+        assertEquals(List.of(2), batches);
+        assertEquals("Рядок 3: Заповніть назву, виконавця та тривалість.", report.errors.get(0));
+        assertEquals("Четверта", store.defaultEvent().songs().get(1).title);
+    }
+
+    private static List<List<String>> read(String text) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader csv = new CsvReader(new BufferedReader(new StringReader(text)))) {
+            for (List<String> record = csv.next(); record != null; record = csv.next()) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
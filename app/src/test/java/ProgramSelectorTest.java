@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgramSelectorTest {
+
+    @Test
+    void beatsGreedyWhenTopSongBlocksBetterPair() {
+        List<Song> songs = List.of(song("Довга", 60, 10), song("Перша", 30, 7), song("Друга", 30, 6));
+        ProgramSelector selector = ProgramSelector.solve(songs, 60);
+
+        ConcertProgram program = selector.select(60);
+        assertEquals(13, program.totalVotes);
+        assertEquals(60, program.totalMinutes);
+        assertEquals(List.of("Перша", "Друга"), titles(program));
+    }
+
+    @Test
+    void matchesBruteForceForEveryLimit() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 50; round++) {
+            List<Song> songs = new ArrayList<>();
+            int n = 1 + random.nextInt(12);
+            for (int i = 0; i < n; i++) {
+                songs.add(song("Пісня " + i, 1 + random.nextInt(15), random.nextInt(20)));
+            }
+            int maxMinutes = random.nextInt(60);
+            ProgramSelector selector = ProgramSelector.solve(songs, maxMinutes);
+            for (int limit = 0; limit <= maxMinutes; limit++) {
+                long expected = bruteForce(songs, limit);
+                ConcertProgram program = selector.select(limit);
+                assertEquals(expected, selector.bestVotes(limit));
+                assertEquals(expected, program.totalVotes);
+                assertTrue(program.totalMinutes <= limit);
+            }
+        }
+    }
+
+    @Test
+    void boundedMemoryModeSelectsTheSameProgram() {
+        SplittableRandom random = new SplittableRandom(11);
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            songs.add(song("Пісня " + i, 2 + random.nextInt(9), random.nextInt(1_000)));
+        }
+        ProgramSelector full = ProgramSelector.solve(songs, 240);
+        ProgramSelector bounded = ProgramSelector.solve(songs, 240, 0);
+
+        assertFalse(full.boundedMemory());
+        assertTrue(bounded.boundedMemory());
+        for (int limit : new int[] {0, 1, 17, 90, 239, 240}) {
+            assertEquals(titles(full.select(limit)), titles(bounded.select(limit)));
+            assertEquals(full.bestVotes(limit), bounded.bestVotes(limit));
+        }
+    }
+
+    @Test
+    void rejectsLimitOutsideSolvedRange() {
+        ProgramSelector selector = ProgramSelector.solve(List.of(song("Одна", 3, 1)), 10);
+
+        assertThrows(IllegalArgumentException.class, () -> selector.select(11));
+        assertThrows(IllegalArgumentException.class, () -> selector.select(-1));
+        assertThrows(IllegalArgumentException.class, () -> ProgramSelector.solve(List.of(), -1));
+    }
+
+    private static long bruteForce(List<Song> songs, int limit) {
+        long best = 0;
+        for (int mask = 0; mask < 1 << songs.size(); mask++) {
+            int minutes = 0;
+            long votes = 0;
+            for (int i = 0; i < songs.size(); i++) {
+                if ((mask & (1 << i)) != 0) {
+                    minutes += songs.get(i).durationMinutes;
+                    votes += songs.get(i).votes;
+                }
+            }
+            if (minutes <= limit) {
+                best = Math.max(best, votes);
+            }
+        }
+        return best;
+    }
+
+    private static Song song(String title, int minutes, int votes) {
+        Song song = new Song(title, "Виконавець", minutes);
+        song.votes = votes;
+        return song;
+    }
+
+    private static List<String> titles(ConcertProgram program) {
+        List<String> titles = new ArrayList<>();
+        for (Song song : program.songs) {
+            titles.add(song.title);
+        }
+        return titles;
+    }
+}
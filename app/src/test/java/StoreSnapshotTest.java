@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreSnapshotTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsUsersEventsAndVotes() throws IOException {
+        DataStore store = new DataStore();
+        store.seed();
+        store.registerUser("другий", "пароль");
+        ConcertEvent second = store.createEvent("Вечірній концерт");
+        second.addSong(new Song("Сонце", "Гурт «Ранок»", 7));
+        second.setMaxVoteLimit(2);
+        User listener = store.findUser("listener", "1234");
+        User other = store.findUser("другий", "пароль");
+        ConcertEvent main = store.defaultEvent();
+        main.castBallot(listener, new int[] {main.songs().get(0).id, main.songs().get(2).id});
+        main.castBallot(other, new int[] {main.songs().get(2).id});
+        second.castBallot(other, new int[] {second.songs().get(0).id});
+        main.setMaxVoteLimit(1);
+        second.closeVoting();
+
+        Path file = dir.resolve("snapshot.bin");
+        store.captureSnapshot(5).write(file);
+        StoreSnapshot snapshot = StoreSnapshot.read(file);
+        DataStore restored = new DataStore();
+        restored.restoreSnapshot(snapshot);
+
+        assertEquals(5, snapshot.journalGeneration);
+        assertEquals(3, restored.users().size());
+        assertEquals(Role.ADMIN, restored.findUser("admin", "admin").role);
+        assertEquals(2, restored.events().size());
+        for (int e = 0; e < store.events().size(); e++) {
+            ConcertEvent expected = store.events().get(e);
+            ConcertEvent actual = restored.events().get(e);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.maxVoteLimit(), actual.maxVoteLimit());
+            assertEquals(expected.isVotingClosed(), actual.isVotingClosed());
+            assertEquals(expected.ballotsAccepted(), actual.ballotsAccepted());
+            assertEquals(expected.songs().size(), actual.songs().size());
+            for (int i = 0; i < expected.songs().size(); i++) {
+                Song a = expected.songs().get(i);
+                Song b = actual.songs().get(i);
+                assertEquals(a.id, b.id);
+                assertEquals(a.title, b.title);
+                assertEquals(a.artist, b.artist);
+                assertEquals(a.durationMinutes, b.durationMinutes);
+                assertEquals(a.votes, b.votes);
+            }
+            StoreSnapshot.EventState before = expected.captureState();
+            StoreSnapshot.EventState after = actual.captureState();
+            assertEquals(before.ballotLimit, after.ballotLimit);
+            assertArrayEquals(before.votedUserIds, after.votedUserIds);
+            assertArrayEquals(before.voteUserIds, after.voteUserIds);
+            assertArrayEquals(before.voteSongIds, after.voteSongIds);
+        }
+        assertTrue(restored.defaultEvent().hasVoted(restored.findUser("listener", "1234")));
+        assertFalse(restored.events().get(1).hasVoted(restored.findUser("listener", "1234")));
+        assertTrue(restored.defaultEvent().audit().clean());
+    }
+
+    @Test
+    void rejectsCorruptedFile() throws IOException {
+        DataStore store = new DataStore();
+        store.seed();
+        Path file = dir.resolve("snapshot.bin");
+        store.captureSnapshot(1).write(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(20);
+            int b = raf.read();
+            raf.seek(20);
+            raf.write(b ^ 0x01);
+        }
+
+        assertThrows(IOException.class, () -> StoreSnapshot.read(file));
+    }
+}
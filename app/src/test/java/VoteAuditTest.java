@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoteAuditTest {
+    private static final Song[] SONGS = {new Song(1, "Перша", "Гурт", 4), new Song(2, "Друга", "Гурт", 5)};
+
+    @Test
+    void cleanEventPasses() {
+        VoteAudit.Report report = VoteAudit.run(state(2, new int[] {1, 1}, new int[] {10, 11}, new int[] {1, 2}));
+
+        assertTrue(report.clean());
+        assertEquals(2, report.votes);
+    }
+
+    @Test
+    void reportsCountMismatch() {
+        VoteAudit.Report report = VoteAudit.run(state(2, new int[] {2, 1}, new int[] {10, 11}, new int[] {1, 2}));
+
+        assertFalse(report.clean());
+        assertEquals(1, report.mismatches);
+        assertEquals(1, report.mismatchLines.size());
+    }
+
+    @Test
+    void reportsDuplicateVoter() {
+        VoteAudit.Report report = VoteAudit.run(state(2, new int[] {2, 0}, new int[] {10, 10}, new int[] {1, 1}));
+
+        assertFalse(report.clean());
+        assertEquals(1, report.duplicateVotes);
+        assertEquals(0, report.mismatches);
+    }
+
+    @Test
+    void reportsBallotOverLimit() {
+        VoteAudit.Report report = VoteAudit.run(state(1, new int[] {1, 1}, new int[] {10, 10}, new int[] {1, 2}));
+
+        assertFalse(report.clean());
+        assertEquals(1, report.overLimit);
+        assertEquals(List.of(10), report.overLimitUsers);
+    }
+
+    @Test
+    void loweringLimitKeepsEarlierBallotsValid() {
+        DataStore store = new DataStore();
+        store.seed();
+        ConcertEvent event = store.defaultEvent();
+        event.castBallot(store.findUser("listener", "1234"),
+                new int[] {event.songs().get(0).id, event.songs().get(1).id, event.songs().get(2).id});
+        event.setMaxVoteLimit(1);
+        event.setMaxVoteLimit(2);
+
+        assertEquals(2, event.maxVoteLimit());
+        assertEquals(3, event.captureState().ballotLimit);
+        assertTrue(event.audit().clean());
+    }
+
+    private static StoreSnapshot.EventState state(int ballotLimit, int[] tallies, int[] voteUserIds, int[] voteSongIds) {
+        int[] voted = IntStream.of(voteUserIds).distinct().sorted().toArray();
+        return new StoreSnapshot.EventState(1, "Подія", ballotLimit, ballotLimit, true, voted,
+                SONGS, tallies, voteUserIds, voteSongIds);
+    }
+}
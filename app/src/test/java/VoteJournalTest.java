@@ -0,0 +1,184 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoteJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysEveryEventAfterReopen() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        DataStore store = new DataStore();
+        try (VoteJournal journal = VoteJournal.open(file, store, 0)) {
+            store.seed();
+            ConcertEvent second = store.createEvent("Друга подія");
+            second.addSong(new Song("Пісня", "Гурт", 4));
+            second.setMaxVoteLimit(1);
+            assertEquals(BallotResult.ACCEPTED, vote(store, second, "listener", 0));
+            store.defaultEvent().closeVoting();
+        }
+
+        DataStore restored = new DataStore();
+        try (VoteJournal journal = VoteJournal.open(file, restored, 0)) {
+            ConcertEvent second = restored.events().get(1);
+            assertEquals("Друга подія", second.name);
+            assertEquals(1, second.maxVoteLimit());
+            assertEquals(1, second.songs().get(0).votes);
+            assertTrue(second.hasVoted(restored.findUser("listener", "1234")));
+            assertTrue(restored.defaultEvent().isVotingClosed());
+            assertEquals(4, restored.defaultEvent().songs().size());
+            assertEquals(1, journal.generation());
+        }
+    }
+
+    @Test
+    void replaysBallotsAppendedConcurrentlyAcrossEvents() throws Exception {
+        Path file = dir.resolve("journal.bin");
+        DataStore store = new DataStore();
+        List<ConcertEvent> events = new ArrayList<>();
+        try (VoteJournal journal = VoteJournal.open(file, store, 0)) {
+            for (int e = 0; e < 20; e++) {
+                ConcertEvent event = store.createEvent("Подія " + e);
+                event.addSong(new Song("Пісня", "Гурт", 4));
+                events.add(event);
+            }
+            List<Future<BallotResult>> results = new ArrayList<>();
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                for (int i = 0; i < 200; i++) {
+                    store.registerUser("listener" + i, "pass");
+                    User user = store.findUser("listener" + i, "pass");
+                    for (ConcertEvent event : events) {
+                        results.add(pool.submit(() -> event.castBallot(user, new int[] {event.songs().get(0).id})));
+                    }
+                }
+                for (Future<BallotResult> result : results) {
+                    assertEquals(BallotResult.ACCEPTED, result.get());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        DataStore restored = new DataStore();
+        try (VoteJournal journal = VoteJournal.open(file, restored, 0)) {
+            assertEquals(200, restored.users().size());
+            for (int e = 0; e < events.size(); e++) {
+                ConcertEvent event = restored.events().get(e + 1);
+                assertEquals(events.get(e).name, event.name);
+                assertEquals(200, event.ballotsAccepted());
+                assertEquals(200, event.songs().get(0).votes);
+            }
+        }
+    }
+
+    @Test
+    void truncatesTornTailAndKeepsAppending() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        DataStore store = new DataStore();
+        long intact;
+        try (VoteJournal journal = VoteJournal.open(file, store, 0)) {
+            store.seed();
+            store.registerUser("second", "pass");
+            assertEquals(BallotResult.ACCEPTED, vote(store, store.defaultEvent(), "listener", 0));
+            intact = Files.size(file);
+            assertEquals(BallotResult.ACCEPTED, vote(store, store.defaultEvent(), "second", 1));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        DataStore restored = new DataStore();
+        try (VoteJournal journal = VoteJournal.open(file, restored, 0)) {
+            assertEquals(intact, Files.size(file));
+            assertEquals(1, restored.defaultEvent().ballotsAccepted());
+            assertFalse(restored.defaultEvent().hasVoted(restored.findUser("second", "pass")));
+            assertEquals(BallotResult.ACCEPTED, vote(restored, restored.defaultEvent(), "second", 2));
+        }
+
+        DataStore reopened = new DataStore();
+        try (VoteJournal journal = VoteJournal.open(file, reopened, 0)) {
+            assertEquals(2, reopened.defaultEvent().ballotsAccepted());
+            assertEquals(1, reopened.defaultEvent().songs().get(2).votes);
+        }
+    }
+
+    @Test
+    void stopsAtRecordWithBadChecksum() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        DataStore store = new DataStore();
+        long intact;
+        try (VoteJournal journal = VoteJournal.open(file, store, 0)) {
+            store.seed();
+            intact = Files.size(file);
+            store.registerUser("second", "pass");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long last = raf.length() - 1;
+            raf.seek(last);
+            int b = raf.read();
+            raf.seek(last);
+            raf.write(b ^ 0xFF);
+        }
+
+        DataStore restored = new DataStore();
+        try (VoteJournal journal = VoteJournal.open(file, restored, 0)) {
+            assertEquals(intact, Files.size(file));
+            assertNotNull(restored.findUser("listener", "1234"));
+            assertFalse(restored.loginExists("second"));
+        }
+    }
+
+    @Test
+    void rejectsBallotsAfterWriteFailure() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        DataStore store = new DataStore();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (VoteJournal journal = VoteJournal.open(channel, store, 0)) {
+            store.seed();
+            channel.close();
+            assertThrows(UncheckedIOException.class, () -> store.registerUser("second", "pass"));
+
+            ConcertEvent event = store.defaultEvent();
+            assertThrows(UncheckedIOException.class, () -> vote(store, event, "listener", 0));
+            assertFalse(event.hasVoted(store.findUser("listener", "1234")));
+            assertEquals(0, event.ballotsAccepted());
+            for (Song song : event.songs()) {
+                assertEquals(0, song.votes);
+            }
+        }
+    }
+
+    @Test
+    void rejectsUnknownHeader() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        Files.write(file, new byte[16]);
+
+        assertThrows(IOException.class, () -> VoteJournal.open(file, new DataStore(), 0));
+    }
+
+    private static BallotResult vote(DataStore store, ConcertEvent event, String login, int song) {
+        User user = store.users().stream().filter(u -> u.login.equals(login)).findFirst().orElseThrow();
+        return event.castBallot(user, new int[] {event.songs().get(song).id});
+    }
+}
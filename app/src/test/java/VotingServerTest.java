@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VotingServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private DataStore store;
+    private VotingServer server;
+    private int firstSong;
+    private int secondSong;
+
+    @BeforeEach
+    void start() throws IOException {
+        store = new DataStore();
+        store.seed();
+        store.registerUser("second", "pass");
+        store.registerUser("third", "pass");
+        firstSong = store.defaultEvent().songs().get(0).id;
+        secondSong = store.defaultEvent().songs().get(1).id;
+        server = VotingServer.start(store, new InetSocketAddress("127.0.0.1", 0), 2);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void loginReturnsOneTokenPerListener() throws Exception {
+        HttpResponse<String> wrong = post("/api/login", "{\"login\":\"listener\",\"password\":\"x\"}", null);
+        assertEquals(401, wrong.statusCode());
+
+        String token = login("listener", "1234");
+        assertEquals(token, login("listener", "1234"));
+        assertNotEquals(token, login("second", "pass"));
+    }
+
+    @Test
+    void ballotIsCountedOnce() throws Exception {
+        String token = login("listener", "1234");
+        String ballot = "{\"songs\":[" + firstSong + "," + secondSong + "]}";
+
+        assertEquals(List.of("ACCEPTED"), results(post("/api/ballots", ballot, token)));
+        assertEquals(List.of("ALREADY_VOTED"), results(post("/api/ballots", ballot, token)));
+        assertEquals(1, store.defaultEvent().findSongById(firstSong).votes);
+        assertEquals(1, store.defaultEvent().ballotsAccepted());
+    }
+
+    @Test
+    void closedVotingRejectsBallots() throws Exception {
+        String token = login("listener", "1234");
+        store.defaultEvent().closeVoting();
+
+        assertEquals(List.of("VOTING_CLOSED"), results(post("/api/ballots", "{\"songs\":[" + firstSong + "]}", token)));
+        assertEquals(0, store.defaultEvent().ballotsAccepted());
+    }
+
+    @Test
+    void malformedItemsDoNotAbortTheBatch() throws Exception {
+        String second = login("second", "pass");
+        String third = login("third", "pass");
+        String batch = "[{\"token\":\"" + second + "\",\"songs\":[\"x\"]},"
+                + "7,"
+                + "{\"token\":\"" + third + "\",\"event\":999,\"songs\":[" + firstSong + "]},"
+                + "{\"token\":\"nope\",\"songs\":[" + firstSong + "]},"
+                + "{\"token\":\"" + third + "\",\"songs\":[" + firstSong + "]}]";
+
+        assertEquals(List.of("INVALID", "INVALID", "INVALID", "UNAUTHORIZED", "ACCEPTED"),
+                results(post("/api/ballots", batch, null)));
+        assertEquals(1, store.defaultEvent().ballotsAccepted());
+    }
+
+    @Test
+    void journalFailureIsReportedPerBallot() throws Exception {
+        String second = login("second", "pass");
+        String third = login("third", "pass");
+        store.attachJournal(new StoreJournal() {
+            @Override
+            public long ballotCast(int eventId, int userId, int[] songIds) {
+                if (userId == store.findUser("second", "pass").id) {
+                    throw new UncheckedIOException(new IOException("диск недоступний"));
+                }
+                return 0;
+            }
+        });
+        String batch = "[{\"token\":\"" + second + "\",\"songs\":[" + firstSong + "]},"
+                + "{\"token\":\"" + third + "\",\"songs\":[" + firstSong + "]}]";
+
+        HttpResponse<String> response = post("/api/ballots", batch, null);
+        assertEquals(List.of("STORAGE_ERROR", "ACCEPTED"), results(response));
+        assertFalse(response.body().contains("диск"), response.body());
+        assertEquals(1, store.defaultEvent().ballotsAccepted());
+    }
+
+    @Test
+    void malformedJsonIsRejected() throws Exception {
+        String token = login("listener", "1234");
+
+        assertEquals(400, post("/api/ballots", "{\"songs\":[1,", token).statusCode());
+        assertEquals(400, post("/api/ballots", "[".repeat(200_000), token).statusCode());
+        assertEquals(0, store.defaultEvent().ballotsAccepted());
+    }
+
+    private String login(String login, String password) throws Exception {
+        HttpResponse<String> response = post("/api/login",
+                "{\"login\":\"" + login + "\",\"password\":\"" + password + "\"}", null);
+        assertEquals(200, response.statusCode());
+        return (String) ((Map<?, ?>) Json.parse(response.body())).get("token");
+    }
+
+    private static List<?> results(HttpResponse<String> response) {
+        assertEquals(200, response.statusCode(), response.body());
+        List<?> items = (List<?>) ((Map<?, ?>) Json.parse(response.body())).get("results");
+        assertTrue(items != null && !items.isEmpty());
+        return items.stream().map(item -> ((Map<?, ?>) item).get("result")).toList();
+    }
+
+    private HttpResponse<String> post(String path, String body, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
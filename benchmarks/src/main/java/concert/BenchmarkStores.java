@@ -0,0 +1,63 @@
+package concert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+final class BenchmarkStores {
+    static final String PASSWORD = "secret";
+    static final int SEED = 42;
+
+    private BenchmarkStores() {}
+
+    static DataStore library(int librarySize) {
+        DataStore store = new DataStore();
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < librarySize; i++) {
+            store.defaultEvent().addSong(new Song("Пісня " + i, "Виконавець " + (i % 500), 2 + random.nextInt(9)));
+        }
+        return store;
+    }
+
+    static List<User> addUsers(DataStore store, int userCount) {
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            String login = login(i);
+            store.registerUser(login, PASSWORD);
+            users.add(store.findUser(login, PASSWORD));
+        }
+        return users;
+    }
+
+    static String login(int i) {
+        return "listener" + i;
+    }
+
+    static int[][] ballots(DataStore store, int ballotCount) {
+        ConcertEvent event = store.defaultEvent();
+        int[] songIds = event.songs().stream().mapToInt(s -> s.id).toArray();
+        int limit = Math.min(event.maxVoteLimit(), songIds.length);
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[][] ballots = new int[ballotCount][];
+        for (int i = 0; i < ballotCount; i++) {
+            int[] ballot = new int[1 + random.nextInt(limit)];
+            int start = random.nextInt(songIds.length);
+            for (int j = 0; j < ballot.length; j++) {
+                ballot[j] = songIds[(start + j) % songIds.length];
+            }
+            ballots[i] = ballot;
+        }
+        return ballots;
+    }
+
+    static DataStore withVotes(int librarySize, int voteCount) {
+        DataStore store = library(librarySize);
+        int ballotCount = Math.max(1, voteCount / Math.max(1, (store.defaultEvent().maxVoteLimit() + 1) / 2));
+        List<User> users = addUsers(store, ballotCount);
+        int[][] ballots = ballots(store, ballotCount);
+        for (int i = 0; i < ballotCount; i++) {
+            store.defaultEvent().castBallot(users.get(i), ballots[i]);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,57 @@
+package concert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int userCount;
+
+    private DataStore store;
+    private String[] logins;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        store = new DataStore();
+        BenchmarkStores.addUsers(store, userCount);
+        SplittableRandom random = new SplittableRandom(BenchmarkStores.SEED);
+        logins = new String[4096];
+        for (int i = 0; i < logins.length; i++) {
+            logins[i] = BenchmarkStores.login(random.nextInt(userCount));
+        }
+    }
+
+    @Benchmark
+    public User findUser() {
+        return store.findUser(nextLogin(), BenchmarkStores.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean loginExists() {
+        return store.loginExists(nextLogin().toUpperCase(Locale.ROOT));
+    }
+
+    private String nextLogin() {
+        return logins[cursor++ & (logins.length - 1)];
+    }
+}
@@ -0,0 +1,70 @@
+package concert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PdfBenchmark {
+    @Param({"50", "1000", "100000"})
+    int librarySize;
+
+    private String[] lines;
+    private String report;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        lines = new String[librarySize];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < librarySize; i++) {
+            lines[i] = String.format(Locale.ROOT, "%d) Щедрик (%d) — Київський хор (%d хв, голосів: %d)",
+                    i + 1, i, 3 + i % 7, librarySize - i);
+            sb.append(lines[i]).append('\n');
+        }
+        report = sb.toString();
+        file = Files.createTempFile("concert-bench", ".pdf");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public SimplePdfWriter streamToSink() throws IOException {
+        SimplePdfWriter writer = new SimplePdfWriter(OutputStream.nullOutputStream());
+        for (String line : lines) {
+            writer.println(line);
+        }
+        writer.finish();
+        return writer;
+    }
+
+    @Benchmark
+    public Path writeReportFile() throws IOException {
+        SimplePdfWriter.writePdf(file, report);
+        return file;
+    }
+}
@@ -0,0 +1,68 @@
+package concert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramSelectionBenchmark {
+    @Param({"100", "1000", "10000"})
+    int librarySize;
+
+    @Param({"90", "600"})
+    int maxMinutes;
+
+    private List<Song> songs;
+
+    @Setup
+    public void setUp() {
+        songs = BenchmarkStores.withVotes(librarySize, librarySize * 20).defaultEvent().songs();
+    }
+
+    @Benchmark
+    public ConcertProgram knapsack() {
+        return ProgramSelector.solve(songs, maxMinutes).select(maxMinutes);
+    }
+
+    @Benchmark
+    public ConcertProgram knapsackBoundedMemory() {
+        return ProgramSelector.solve(songs, maxMinutes, 0).select(maxMinutes);
+    }
+
+    @Benchmark
+    public List<Song> greedy() {
+        List<Song> sorted = songs.stream()
+                .sorted(Comparator.comparingInt((Song s) -> s.votes).reversed()
+                        .thenComparing(s -> s.title.toLowerCase(Locale.ROOT)))
+                .collect(Collectors.toList());
+        List<Song> concertSongs = new ArrayList<>();
+        int total = 0;
+        for (Song song : sorted) {
+            if (total + song.durationMinutes <= maxMinutes) {
+                concertSongs.add(song);
+                total += song.durationMinutes;
+            }
+        }
+        return concertSongs;
+    }
+}
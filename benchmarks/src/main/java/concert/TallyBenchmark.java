@@ -0,0 +1,54 @@
+package concert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TallyBenchmark {
+    @Param({"100", "10000"})
+    int librarySize;
+
+    @Param({"100000", "1000000"})
+    int voteCount;
+
+    private DataStore store;
+    private SongTableModel model;
+    private int nextLimit;
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkStores.withVotes(librarySize, voteCount);
+        model = new SongTableModel(store.defaultEvent().view());
+        nextLimit = store.defaultEvent().maxVoteLimit();
+    }
+
+    @Benchmark
+    public int fullRecount() {
+        return store.recalculateAllVotes();
+    }
+
+    @Benchmark
+    public int incrementalRefresh() {
+        ConcertEvent event = store.defaultEvent();
+        nextLimit = nextLimit == 3 ? 4 : 3;
+        event.setMaxVoteLimit(nextLimit);
+        model.update(event.view());
+        return model.getRowCount();
+    }
+}
@@ -0,0 +1,65 @@
+package concert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Одна операція — повний прийом бюлетенів від userCount слухачів у свіже сховище.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VoteIngestionBenchmark {
+    @Param({"100", "10000"})
+    int librarySize;
+
+    @Param({"10000", "100000"})
+    int userCount;
+
+    private ConcertEvent event;
+    private List<User> users;
+    private int[][] ballots;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        DataStore store = BenchmarkStores.library(librarySize);
+        event = store.defaultEvent();
+        users = BenchmarkStores.addUsers(store, userCount);
+        ballots = BenchmarkStores.ballots(store, userCount);
+    }
+
+    @Benchmark
+    public int sequential() {
+        int accepted = 0;
+        for (int i = 0; i < userCount; i++) {
+            if (event.castBallot(users.get(i), ballots[i]) == BallotResult.ACCEPTED) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public long parallel() {
+        return IntStream.range(0, userCount).parallel()
+                .filter(i -> event.castBallot(users.get(i), ballots[i]) == BallotResult.ACCEPTED)
+                .count();
+    }
+}
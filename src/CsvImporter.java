@@ -0,0 +1,285 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/** Потоковий читач CSV за RFC 4180; задовгі поля й записи обрізаються і позначаються truncated. */
+final class CsvReader implements Closeable {
+    static final int MAX_FIELD_LENGTH = 64 * 1024;
+    static final int MAX_FIELDS = 256;
+
+    private final Reader in;
+    private final char delimiter;
+    private final StringBuilder field = new StringBuilder();
+    private int line = 1;
+    private int recordLine;
+    private boolean truncated;
+    private boolean started;
+
+    CsvReader(BufferedReader in) throws IOException {
+        this.in = in;
+        this.delimiter = detectDelimiter(in);
+    }
+
+    List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> record = new ArrayList<>();
+        recordLine = line;
+        truncated = false;
+        field.setLength(0);
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    addField(record);
+                    return record;
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                append((char) c);
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+            } else if (c == delimiter) {
+                addField(record);
+                field.setLength(0);
+                fieldStart = true;
+                c = read();
+                continue;
+            } else if (c == '\n' || c == -1) {
+                if (c == '\n') {
+                    line++;
+                }
+                addField(record);
+                return record;
+            } else if (c != '\r') {
+                append((char) c);
+            }
+            fieldStart = false;
+            c = read();
+        }
+    }
+
+    int recordLine() {
+        return recordLine;
+    }
+
+    boolean truncated() {
+        return truncated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void addField(List<String> record) {
+        if (record.size() < MAX_FIELDS) {
+            record.add(field.toString());
+        } else {
+            truncated = true;
+        }
+    }
+
+    private void append(char c) {
+        if (field.length() < MAX_FIELD_LENGTH) {
+            field.append(c);
+        } else {
+            truncated = true;
+        }
+    }
+
+    private int read() throws IOException {
+        int c = in.read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                c = in.read();
+            }
+        }
+        return c;
+    }
+
+    // Excel з українською локаллю зберігає CSV через «;», тож роздільник визначається за першим рядком.
+    private static char detectDelimiter(BufferedReader in) throws IOException {
+        in.mark(MAX_FIELD_LENGTH);
+        int commas = 0;
+        int semicolons = 0;
+        boolean quoted = false;
+        for (int i = 0; i < MAX_FIELD_LENGTH; i++) {
+            int c = in.read();
+            if (c == -1 || (!quoted && c == '\n')) {
+                break;
+            }
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == ',') {
+                commas++;
+            } else if (!quoted && c == ';') {
+                semicolons++;
+            }
+        }
+        in.reset();
+        return semicolons > commas ? ';' : ',';
+    }
+}
+
+final class CsvImporter {
+    static final int BATCH_SIZE = 1_000;
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private CsvImporter() {}
+
+    static Report importSongs(BufferedReader reader, ConcertEvent event, IntConsumer afterBatch) throws IOException {
+        Report report = new Report();
+        List<Song> batch = new ArrayList<>(BATCH_SIZE);
+        try (CsvReader csv = new CsvReader(reader)) {
+            boolean first = true;
+            for (List<String> row = csv.next(); row != null; row = csv.next()) {
+                if (isBlank(row)) {
+                    continue;
+                }
+                if (first && isHeader(row, "title", "назва")) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                if (!checkShape(csv, row, 3, "назва, виконавець, тривалість", report)) {
+                    continue;
+                }
+                try {
+                    batch.add(Song.parse(row.get(0), row.get(1), row.get(2)));
+                } catch (IllegalArgumentException ex) {
+                    report.reject(csv.recordLine(), ex.getMessage());
+                    continue;
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    flushSongs(batch, event, report, afterBatch);
+                }
+            }
+        }
+        flushSongs(batch, event, report, afterBatch);
+        return report;
+    }
+
+    static Report importUsers(BufferedReader reader, DataStore store, IntConsumer afterBatch) throws IOException {
+        Report report = new Report();
+        List<User> batch = new ArrayList<>(BATCH_SIZE);
+        int[] lines = new int[BATCH_SIZE];
+        try (CsvReader csv = new CsvReader(reader)) {
+            boolean first = true;
+            for (List<String> row = csv.next(); row != null; row = csv.next()) {
+                if (isBlank(row)) {
+                    continue;
+                }
+                if (first && isHeader(row, "login", "логін")) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                if (!checkShape(csv, row, 2, "логін, пароль", report)) {
+                    continue;
+                }
+                String login = row.get(0).trim();
+                String password = row.get(1);
+                if (login.isBlank() || password.isBlank()) {
+                    report.reject(csv.recordLine(), "Заповніть логін і пароль.");
+                    continue;
+                }
+                lines[batch.size()] = csv.recordLine();
+                batch.add(new User(login, password, Role.USER));
+                if (batch.size() == BATCH_SIZE) {
+                    flushUsers(batch, lines, store, report, afterBatch);
+                }
+            }
+        }
+        flushUsers(batch, lines, store, report, afterBatch);
+        return report;
+    }
+
+    private static void flushSongs(List<Song> batch, ConcertEvent event, Report report, IntConsumer afterBatch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        event.addSongs(batch);
+        report.imported += batch.size();
+        batch.clear();
+        afterBatch.accept(report.imported);
+    }
+
+    private static void flushUsers(List<User> batch, int[] lines, DataStore store, Report report, IntConsumer afterBatch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean[] added = store.registerUsers(batch);
+        for (int i = 0; i < added.length; i++) {
+            if (added[i]) {
+                report.imported++;
+            } else {
+                report.reject(lines[i], "Користувач із логіном «" + batch.get(i).login + "» вже існує.");
+            }
+        }
+        batch.clear();
+        afterBatch.accept(report.imported);
+    }
+
+    private static boolean checkShape(CsvReader csv, List<String> row, int fields, String columns, Report report) {
+        if (csv.truncated()) {
+            report.reject(csv.recordLine(), "Запис перевищує ліміт: поле до " + CsvReader.MAX_FIELD_LENGTH
+                    + " символів, до " + CsvReader.MAX_FIELDS + " полів.");
+            return false;
+        }
+        if (row.size() != fields) {
+            report.reject(csv.recordLine(), "Очікується " + fields + " поля (" + columns + "), знайдено " + row.size() + ".");
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlank(List<String> row) {
+        return row.size() == 1 && row.get(0).isBlank();
+    }
+
+    private static boolean isHeader(List<String> row, String english, String ukrainian) {
+        String first = row.get(0).trim();
+        return first.equalsIgnoreCase(english) || first.equalsIgnoreCase(ukrainian);
+    }
+
+    static final class Report {
+        int imported;
+        int rejected;
+        final List<String> errors = new ArrayList<>();
+
+        void reject(int line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Рядок " + line + ": " + message);
+            }
+        }
+
+        String summary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Імпортовано: ").append(imported).append(", відхилено: ").append(rejected);
+            for (String error : errors) {
+                sb.append('\n').append(error);
+            }
+            if (rejected > errors.size()) {
+                sb.append("\n… ще ").append(rejected - errors.size()).append(" помилок");
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -1,132 +1,1645 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 public class Main {
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            DataStore dataStore = new DataStore();
+        DataStore dataStore = new DataStore();
+        Path dataDir = Path.of(System.getProperty("concert.data", "concert-data"));
+        long snapshotMinutes = Long.getLong("concert.snapshotMinutes", 5);
+        try {
+            StorePersistence persistence = StorePersistence.open(dataDir, dataStore, snapshotMinutes);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    persistence.close();
+                } catch (IOException ex) {
+                    System.err.println("Не вдалося зберегти стан: " + ex.getMessage());
+                }
+            }));
+        } catch (IOException ex) {
+            System.err.println("Каталог даних недоступний, дані зберігатимуться лише в пам'яті: " + ex.getMessage());
+        }
+        if (dataStore.isEmpty()) {
             dataStore.seed();
-            new LoginFrame(dataStore).setVisible(true);
+        }
+        Metrics.register();
+        String metricsFile = System.getProperty("concert.metricsFile");
+        if (metricsFile != null) {
+            Metrics.startDump(Path.of(metricsFile), Long.getLong("concert.metricsSeconds", 60));
+        }
+        Integer httpPort = Integer.getInteger("concert.httpPort");
+        if (httpPort != null) {
+            String host = System.getProperty("concert.httpHost", "0.0.0.0");
+            try {
+                VotingServer server = VotingServer.start(dataStore, new InetSocketAddress(host, httpPort),
+                        Integer.getInteger("concert.httpThreads", 64));
+                System.out.println("HTTP API голосування: http://" + host + ":" + server.port() + "/api/songs");
+            } catch (IOException ex) {
+                System.err.println("Не вдалося запустити HTTP API: " + ex.getMessage());
+            }
+        }
+        SwingUtilities.invokeLater(() -> new LoginFrame(dataStore).setVisible(true));
+    }
+}
+
+/** Безголовий режим навантаження: java -cp out LoadSimulator --users=100000 --songs=2000 --listeners=1000 */
+class LoadSimulator {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int userCount = intOption(options, "users", 10_000);
+        int songCount = intOption(options, "songs", 500);
+        int listeners = intOption(options, "listeners", 1_000);
+        int limit = intOption(options, "limit", 3);
+        int maxMinutes = intOption(options, "minutes", 90);
+        int eventCount = intOption(options, "events", 1);
+        long seed = intOption(options, "seed", 42);
+
+        DataStore store = new DataStore();
+        StorePersistence persistence = null;
+        if (options.containsKey("data")) {
+            persistence = StorePersistence.open(Path.of(options.get("data")), store, 0);
+        }
+        try {
+            run(store, eventCount, userCount, songCount, listeners, limit, maxMinutes, seed, options.get("pdf"));
+        } finally {
+            if (persistence != null) {
+                persistence.close();
+            }
+        }
+    }
+
+    private static void run(DataStore store, int eventCount, int userCount, int songCount, int listeners, int limit,
+                            int maxMinutes, long seed, String pdfDir) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed);
+        long started = System.nanoTime();
+        ConcertEvent[] events = new ConcertEvent[eventCount];
+        int[][] songIds = new int[eventCount][];
+        for (int e = 0; e < eventCount; e++) {
+            events[e] = e == 0 ? store.defaultEvent() : store.createEvent("Подія " + (e + 1));
+            events[e].setMaxVoteLimit(limit);
+            for (int i = 0; i < songCount; i++) {
+                events[e].addSong(new Song("Пісня " + (i + 1), "Виконавець " + (i % 97 + 1), 2 + random.nextInt(9)));
+            }
+            songIds[e] = events[e].songs().stream().mapToInt(s -> s.id).toArray();
+        }
+        User[] users = new User[userCount];
+        for (int i = 0; i < userCount; i++) {
+            String login = "sim" + seed + "_" + i;
+            store.registerUser(login, "sim");
+            users[i] = store.findUser(login, "sim");
+        }
+        System.out.printf(Locale.ROOT, "Підготовка: %d слухачів, %d подій по %d пісень за %.1f мс%n",
+                userCount, eventCount, songIds[0].length, (System.nanoTime() - started) / 1e6);
+        if (songIds[0].length == 0 || userCount == 0) {
+            System.out.println("Немає пісень або слухачів для симуляції.");
+            return;
+        }
+
+        AtomicInteger cursor = new AtomicInteger();
+        LongAdder votesCast = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        long[][] latencies = new long[listeners][];
+        int[] latencyCounts = new int[listeners];
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = ListenerThreads.newExecutor(listeners);
+        List<Future<?>> futures = new ArrayList<>(listeners);
+        for (int l = 0; l < listeners; l++) {
+            int listener = l;
+            SplittableRandom listenerRandom = random.split();
+            latencies[listener] = new long[userCount / listeners + 1];
+            futures.add(executor.submit(() -> {
+                start.await();
+                long[] samples = latencies[listener];
+                int count = 0;
+                for (int i = cursor.getAndIncrement(); i < users.length; i = cursor.getAndIncrement()) {
+                    int e = i % events.length;
+                    int[] ballot = randomBallot(listenerRandom, songIds[e], limit);
+                    long t0 = System.nanoTime();
+                    BallotResult result = events[e].castBallot(users[i], ballot);
+                    long elapsed = System.nanoTime() - t0;
+                    if (count == samples.length) {
+                        samples = Arrays.copyOf(samples, samples.length * 2);
+                    }
+                    samples[count++] = elapsed;
+                    if (result == BallotResult.ACCEPTED) {
+                        votesCast.add(ballot.length);
+                    } else {
+                        rejected.increment();
+                    }
+                }
+                latencies[listener] = samples;
+                latencyCounts[listener] = count;
+                return null;
+            }));
+        }
+
+        long votingStarted = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long votingNanos = System.nanoTime() - votingStarted;
+        executor.shutdown();
+
+        long[] all = new long[userCount];
+        int total = 0;
+        for (int l = 0; l < listeners; l++) {
+            System.arraycopy(latencies[l], 0, all, total, latencyCounts[l]);
+            total += latencyCounts[l];
+        }
+        Arrays.sort(all, 0, total);
+
+        double seconds = votingNanos / 1e9;
+        System.out.printf(Locale.ROOT, "Голосування: %d бюлетенів, %d голосів, відхилено %d за %.3f с (%s)%n",
+                total, votesCast.sum(), rejected.sum(), seconds, ListenerThreads.description());
+        System.out.printf(Locale.ROOT, "Пропускна здатність: %.0f голосів/с, %.0f бюлетенів/с%n",
+                votesCast.sum() / seconds, total / seconds);
+        System.out.printf(Locale.ROOT, "Затримка бюлетеня, мкс: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                percentile(all, total, 0.50), percentile(all, total, 0.90), percentile(all, total, 0.99),
+                percentile(all, total, 0.999), total == 0 ? 0 : all[total - 1] / 1e3);
+
+        long finalizeStarted = System.nanoTime();
+        for (ConcertEvent event : events) {
+            event.closeVoting();
+        }
+        Path dir = pdfDir == null ? null : Files.createDirectories(Path.of(pdfDir));
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<EventFinalizer.Result> results =
+                EventFinalizer.finalizeClosed(store.events(), store.reports(), maxMinutes, dir, threads);
+        System.out.printf(Locale.ROOT, "Формування концертів (%d подій, до %d потоків): %.1f мс, корекцій лічильників: %d%n",
+                results.size(), threads, (System.nanoTime() - finalizeStarted) / 1e6, store.recalculateAllVotes());
+
+        for (EventFinalizer.Result result : results) {
+            System.out.println();
+            if (result.error != null) {
+                System.out.println("Подія " + result.event.name + ": помилка " + result.error);
+                continue;
+            }
+            System.out.print(result.event.audit().summary());
+            System.out.println("Лідери голосування, " + result.event.name + ":");
+            result.event.topSongs(10)
+                    .forEach(s -> System.out.printf(Locale.ROOT, "  %-20s %-16s %6d%n", s.title, s.artist, s.votes));
+            System.out.println();
+            System.out.print(result.report);
+        }
+    }
+
+    private static int[] randomBallot(SplittableRandom random, int[] songIds, int limit) {
+        int size = 1 + random.nextInt(Math.min(limit, songIds.length));
+        int[] ballot = new int[size];
+        for (int i = 0; i < size; i++) {
+            int songId;
+            boolean duplicate;
+            do {
+                double r = random.nextDouble();
+                songId = songIds[(int) (r * r * songIds.length)];
+                duplicate = false;
+                for (int j = 0; j < i; j++) {
+                    duplicate |= ballot[j] == songId;
+                }
+            } while (duplicate);
+            ballot[i] = songId;
+        }
+        return ballot;
+    }
+
+    private static double percentile(long[] sorted, int count, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(count - 1, Math.ceil(p * count) - 1);
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Очікується --ключ=значення: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int parsed = Integer.parseInt(value.replace("_", ""));
+        if (parsed <= 0) {
+            throw new IllegalArgumentException("--" + name + " має бути додатним: " + value);
+        }
+        return parsed;
+    }
+}
+
+/** Віртуальні потоки на JDK 21+, інакше пул платформних потоків. */
+final class ListenerThreads {
+    private static final Method VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    private ListenerThreads() {}
+
+    static ExecutorService newExecutor(int platformThreads) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                // переходимо на платформні потоки
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, r -> {
+            Thread thread = new Thread(r, "listener");
+            thread.setDaemon(true);
+            return thread;
         });
     }
+
+    static String description() {
+        return VIRTUAL_EXECUTOR != null ? "віртуальні потоки" : "платформні потоки";
+    }
+
+    private static Method findVirtualExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
 }
 
 enum Role {
     ADMIN, USER
 }
 
+enum BallotResult {
+    ACCEPTED, ALREADY_VOTED, VOTING_CLOSED, INVALID_SELECTION, UNKNOWN_SONG
+}
+
 class User {
-    private static int seq = 1;
+    private static final AtomicInteger SEQ = new AtomicInteger(1);
     final int id;
     final String login;
     final String password;
     final Role role;
-    boolean voted;
 
     User(String login, String password, Role role) {
-        this.id = seq++;
+        this(SEQ.getAndIncrement(), login, password, role);
+    }
+
+    User(int id, String login, String password, Role role) {
+        SEQ.accumulateAndGet(id + 1, Math::max);
+        this.id = id;
         this.login = login;
         this.password = password;
         this.role = role;
-        this.voted = false;
     }
 }
 
 class Song {
-    private static int seq = 1;
+    private static final AtomicInteger SEQ = new AtomicInteger(1);
+    private static final AtomicIntegerFieldUpdater<Song> VOTES =
+            AtomicIntegerFieldUpdater.newUpdater(Song.class, "votes");
     final int id;
-    String title;
-    String artist;
-    int durationMinutes;
-    int votes;
+    final String title;
+    final String artist;
+    final int durationMinutes;
+    volatile int votes;
 
     Song(String title, String artist, int durationMinutes) {
-        this.id = seq++;
+        this(SEQ.getAndIncrement(), title, artist, durationMinutes);
+    }
+
+    Song(int id, String title, String artist, int durationMinutes) {
+        SEQ.accumulateAndGet(id + 1, Math::max);
+        this.id = id;
         this.title = title;
-        this.artist = artist;
+        this.artist = artist.intern();
         this.durationMinutes = durationMinutes;
         this.votes = 0;
     }
-}
 
-class Vote {
-    private static int seq = 1;
-    final int id;
-    final int userId;
-    final int songId;
+    static Song parse(String title, String artist, String durationText) {
+        title = title.trim();
+        artist = artist.trim();
+        durationText = durationText.trim();
+        if (title.isBlank() || artist.isBlank() || durationText.isBlank()) {
+            throw new IllegalArgumentException("Заповніть назву, виконавця та тривалість.");
+        }
+        int duration;
+        try {
+            duration = Integer.parseInt(durationText);
+        } catch (NumberFormatException ex) {
+            duration = 0;
+        }
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Тривалість має бути додатним числом.");
+        }
+        return new Song(title, artist, duration);
+    }
 
-    Vote(int userId, int songId) {
-        this.id = seq++;
-        this.userId = userId;
-        this.songId = songId;
+    void incrementVotes() {
+        VOTES.incrementAndGet(this);
     }
 }
 
 class DataStore {
-    final List<User> users = new ArrayList<>();
-    final List<Song> songs = new ArrayList<>();
-    final List<Vote> votes = new ArrayList<>();
-
-    int maxVoteLimit = 3;
-    boolean votingClosed = false;
+    static final int DEFAULT_EVENT_ID = 1;
+    static final String DEFAULT_EVENT_NAME = "Основний концерт";
+
+    private final Map<String, User> usersByLogin = new ConcurrentHashMap<>();
+    private final Map<Integer, User> usersById = new ConcurrentHashMap<>();
+    private final Map<Integer, ConcertEvent> eventsById = new ConcurrentHashMap<>();
+    private final List<ConcertEvent> events = new CopyOnWriteArrayList<>();
+    private final AtomicInteger eventSeq = new AtomicInteger(DEFAULT_EVENT_ID);
+    private final ConcertEvent defaultEvent;
+
+    // Зміни каталогу тримають read-lock, знімок стану — write-lock; бюлетені цього локу не торкаються.
+    private final ReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    private final Object registrationLock = new Object();
+
+    private volatile StoreJournal journal = StoreJournal.NONE;
+    private final List<StoreListener> listeners = new CopyOnWriteArrayList<>();
+    private final ReportCache reports = new ReportCache(ReportCache.DEFAULT_CAPACITY);
+
+    DataStore() {
+        defaultEvent = applyEvent(DEFAULT_EVENT_ID, DEFAULT_EVENT_NAME);
+    }
 
     void seed() {
-        users.add(new User("admin", "admin", Role.ADMIN));
-        users.add(new User("listener", "1234", Role.USER));
+        addUser(new User("admin", "admin", Role.ADMIN));
+        addUser(new User("listener", "1234", Role.USER));
+
+        defaultEvent.addSong(new Song("Танець пінгвіна", "Океан Ельзи", 4));
+        defaultEvent.addSong(new Song("Ніч яка місячна", "Скрябін", 5));
+        defaultEvent.addSong(new Song("Шлях до мрії", "Антитіла", 4));
+        defaultEvent.addSong(new Song("Зоряний дощ", "Pianoбой", 6));
+    }
+
+    void attachJournal(StoreJournal journal) {
+        this.journal = journal;
+    }
+
+    StoreJournal journal() {
+        return journal;
+    }
+
+    ReportCache reports() {
+        return reports;
+    }
+
+    void addListener(StoreListener listener) {
+        listeners.add(listener);
+    }
+
+    void fireChanged(ConcertEvent event) {
+        for (StoreListener listener : listeners) {
+            listener.eventChanged(event);
+        }
+    }
+
+    boolean isEmpty() {
+        return usersByLogin.isEmpty() && events.size() == 1 && defaultEvent.songs().isEmpty();
+    }
+
+    Collection<User> users() {
+        return Collections.unmodifiableCollection(usersByLogin.values());
+    }
+
+    ConcertEvent defaultEvent() {
+        return defaultEvent;
+    }
 
-        songs.add(new Song("Танець пінгвіна", "Океан Ельзи", 4));
-        songs.add(new Song("Ніч яка місячна", "Скрябін", 5));
-        songs.add(new Song("Шлях до мрії", "Антитіла", 4));
-        songs.add(new Song("Зоряний дощ", "Pianoбой", 6));
+    ConcertEvent event(int id) {
+        return eventsById.get(id);
+    }
+
+    List<ConcertEvent> events() {
+        return Collections.unmodifiableList(events);
+    }
+
+    ConcertEvent createEvent(String name) {
+        String trimmed = name.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Вкажіть назву події.");
+        }
+        StoreJournal log;
+        long seq;
+        ConcertEvent event;
+        catalogLock.readLock().lock();
+        try {
+            synchronized (events) {
+                int id = eventSeq.get();
+                log = journal;
+                seq = log.eventCreated(id, trimmed);
+                event = applyEvent(id, trimmed);
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        log.sync(seq);
+        return event;
     }
 
     User findUser(String login, String password) {
-        return users.stream()
-                .filter(u -> u.login.equals(login) && u.password.equals(password))
-                .findFirst()
-                .orElse(null);
+        long started = System.nanoTime();
+        User user = usersByLogin.get(loginKey(login));
+        if (user != null && (!user.login.equals(login) || !user.password.equals(password))) {
+            user = null;
+        }
+        Metrics.LOGIN.record(System.nanoTime() - started);
+        return user;
+    }
+
+    User findUserById(int id) {
+        return usersById.get(id);
     }
 
     boolean loginExists(String login) {
-        return users.stream().anyMatch(u -> u.login.equalsIgnoreCase(login));
+        return usersByLogin.containsKey(loginKey(login));
+    }
+
+    boolean registerUser(String login, String password) {
+        long started = System.nanoTime();
+        boolean added = addUser(new User(login, password, Role.USER));
+        Metrics.REGISTER.record(System.nanoTime() - started);
+        return added;
+    }
+
+    boolean[] registerUsers(List<User> batch) {
+        long started = System.nanoTime();
+        boolean[] added = new boolean[batch.size()];
+        StoreJournal log;
+        long seq = 0;
+        catalogLock.readLock().lock();
+        try {
+            synchronized (registrationLock) {
+                log = journal;
+                for (int i = 0; i < added.length; i++) {
+                    User user = batch.get(i);
+                    if (!usersByLogin.containsKey(loginKey(user.login))) {
+                        seq = log.userRegistered(user);
+                        applyUser(user);
+                        added[i] = true;
+                    }
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        log.sync(seq);
+        Metrics.REGISTER_USERS.record(System.nanoTime() - started);
+        return added;
+    }
+
+    private boolean addUser(User user) {
+        StoreJournal log;
+        long seq;
+        catalogLock.readLock().lock();
+        try {
+            synchronized (registrationLock) {
+                if (usersByLogin.containsKey(loginKey(user.login))) {
+                    return false;
+                }
+                log = journal;
+                seq = log.userRegistered(user);
+                applyUser(user);
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        log.sync(seq);
+        return true;
+    }
+
+    /** Виконує action, коли жодна зміна сховища не в польоті: знімок стану, ротація журналу. */
+    <T> T exclusive(Supplier<T> action) {
+        catalogLock.writeLock().lock();
+        List<ConcertEvent> locked = List.copyOf(events);
+        int held = 0;
+        try {
+            for (ConcertEvent event : locked) {
+                event.lockExclusive();
+                held++;
+            }
+            return action.get();
+        } finally {
+            for (int i = held - 1; i >= 0; i--) {
+                locked.get(i).unlockExclusive();
+            }
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    StoreSnapshot captureSnapshot(long journalGeneration) {
+        User[] userArray = usersById.values().toArray(new User[0]);
+        StoreSnapshot.EventState[] states = new StoreSnapshot.EventState[events.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = events.get(i).captureState();
+        }
+        return new StoreSnapshot(journalGeneration, userArray, states);
+    }
+
+    void restoreSnapshot(StoreSnapshot snapshot) {
+        for (User user : snapshot.users) {
+            applyUser(user);
+        }
+        for (StoreSnapshot.EventState state : snapshot.events) {
+            applyEvent(state.id, state.name).restoreState(state);
+        }
+    }
+
+    /** Перераховує лічильники голосів усіх подій; повертає кількість виправлених пісень. */
+    int recalculateAllVotes() {
+        int corrected = 0;
+        for (ConcertEvent event : events) {
+            corrected += event.recalculateVotes();
+        }
+        return corrected;
+    }
+
+    void applyUser(User user) {
+        usersByLogin.put(loginKey(user.login), user);
+        usersById.put(user.id, user);
+    }
+
+    ConcertEvent applyEvent(int id, String name) {
+        synchronized (events) {
+            ConcertEvent event = eventsById.get(id);
+            if (event == null) {
+                event = new ConcertEvent(this, id, name);
+                eventsById.put(id, event);
+                events.add(event);
+                eventSeq.accumulateAndGet(id + 1, Math::max);
+            }
+            return event;
+        }
+    }
+
+    private static String loginKey(String login) {
+        return login.toLowerCase(Locale.ROOT);
+    }
+}
+
+final class ConcertEvent {
+    private static final int OPTIMISTIC_READS = 64;
+
+    final int id;
+    final String name;
+
+    private final DataStore store;
+    private final Map<Integer, Song> songsById = new ConcurrentHashMap<>();
+    private final List<Song> songs = new CopyOnWriteArrayList<>();
+    private final VoteTable votes = new VoteTable();
+
+    // Бюлетені тримають read-lock і йдуть паралельно; закриття, ліміт, видалення пісень і знімок — write-lock.
+    private final ReadWriteLock ballotLock = new ReentrantReadWriteLock();
+
+    private volatile int maxVoteLimit = 3;
+    private volatile boolean votingClosed = false;
+    private final LongAdder ballotsAccepted = new LongAdder();
+    // Найбільший ліміт, за яким прийнято бюлетені до ballotsAtLimit; аудит звіряє бюлетені з ним, а не з поточним.
+    private int ballotLimit;
+    private long ballotsAtLimit;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final SongSearchIndex searchIndex = new SongSearchIndex();
+
+    // Лічильники початих і завершених змін: зріз узгоджений, якщо поки його копіювали, жодна зміна не почалася.
+    private final LongAdder changesStarted = new LongAdder();
+    private final LongAdder mutations = new LongAdder();
+    private volatile EventView view;
+
+    ConcertEvent(DataStore store, int id, String name) {
+        this.store = store;
+        this.id = id;
+        this.name = name;
+        this.view = copyView(0, null);
+    }
+
+    List<Song> songs() {
+        return Collections.unmodifiableList(songs);
+    }
+
+    int maxVoteLimit() {
+        return maxVoteLimit;
+    }
+
+    boolean isVotingClosed() {
+        return votingClosed;
+    }
+
+    boolean hasVoted(User user) {
+        return votes.hasVoted(user.id);
+    }
+
+    List<Song> topSongs(int k) {
+        return leaderboard.top(k);
+    }
+
+    BitSet searchSongs(String query) {
+        return searchIndex.search(query);
+    }
+
+    long ballotsAccepted() {
+        return ballotsAccepted.sum();
+    }
+
+    /** Узгоджений незмінний зріз без локу; якщо бюлетені не вщухають, повертається останній узгоджений. */
+    EventView view() {
+        EventView current = view;
+        for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+            long version = mutations.sum();
+            if (current.version == version) {
+                return current;
+            }
+            if (changesStarted.sum() == version) {
+                EventView copy = copyView(version, current);
+                if (changesStarted.sum() == version) {
+                    view = copy;
+                    return copy;
+                }
+            }
+            Thread.onSpinWait();
+            current = view;
+        }
+        return current;
+    }
+
+    private EventView captureView() {
+        EventView current = view;
+        long version = mutations.sum();
+        if (current.version != version) {
+            current = copyView(version, current);
+            view = current;
+        }
+        return current;
+    }
+
+    private EventView copyView(long version, EventView current) {
+        List<Song> list = current != null && sameSongs(current.songs) ? current.songs : List.copyOf(songs);
+        int[] tallies = new int[list.size()];
+        for (int i = 0; i < tallies.length; i++) {
+            tallies[i] = list.get(i).votes;
+        }
+        List<Song> leaders = leaderboard.top(EventView.LEADERS);
+        int[] leaderVotes = new int[leaders.size()];
+        for (int i = 0; i < leaderVotes.length; i++) {
+            leaderVotes[i] = leaders.get(i).votes;
+        }
+        return new EventView(version, list, tallies, maxVoteLimit, votingClosed, ballotsAccepted.sum(),
+                leaders, leaderVotes);
+    }
+
+    private void beginChange() {
+        changesStarted.increment();
     }
 
-    void registerUser(String login, String password) {
-        users.add(new User(login, password, Role.USER));
+    private void changed() {
+        mutations.increment();
+        store.fireChanged(this);
     }
 
-    Song findSongById(int id) {
-        return songs.stream().filter(s -> s.id == id).findFirst().orElse(null);
+    // Пісні лише дописуються в кінець або видаляються, тож досить порівняти розмір і останній елемент.
+    private boolean sameSongs(List<Song> previous) {
+        int n = previous.size();
+        return n == songs.size() && (n == 0 || previous.get(n - 1) == songs.get(n - 1));
+    }
+
+    void addSong(Song song) {
+        long started = System.nanoTime();
+        StoreJournal log;
+        long seq;
+        ballotLock.readLock().lock();
+        try {
+            log = store.journal();
+            seq = log.songAdded(id, song);
+            applySong(song);
+        } finally {
+            ballotLock.readLock().unlock();
+        }
+        log.sync(seq);
+        Metrics.ADD_SONG.record(System.nanoTime() - started);
+    }
+
+    void addSongs(List<Song> batch) {
+        long started = System.nanoTime();
+        StoreJournal log;
+        long seq = 0;
+        ballotLock.readLock().lock();
+        try {
+            log = store.journal();
+            for (Song song : batch) {
+                seq = log.songAdded(id, song);
+            }
+            beginChange();
+            for (Song song : batch) {
+                songsById.put(song.id, song);
+                leaderboard.add(song);
+            }
+            songs.addAll(batch);
+            searchIndex.addAll(batch);
+            changed();
+        } finally {
+            ballotLock.readLock().unlock();
+        }
+        log.sync(seq);
+        Metrics.ADD_SONGS.record(System.nanoTime() - started);
+    }
+
+    void deleteSong(int songId) {
+        long started = System.nanoTime();
+        StoreJournal log;
+        long seq;
+        ballotLock.writeLock().lock();
+        try {
+            if (!songsById.containsKey(songId)) {
+                return;
+            }
+            log = store.journal();
+            seq = log.songDeleted(id, songId);
+            applyDeleteSong(songId);
+        } finally {
+            ballotLock.writeLock().unlock();
+        }
+        log.sync(seq);
+        Metrics.DELETE_SONG.record(System.nanoTime() - started);
+    }
+
+    Song findSongById(int songId) {
+        return songsById.get(songId);
+    }
+
+    void setMaxVoteLimit(int limit) {
+        long started = System.nanoTime();
+        StoreJournal log;
+        long seq;
+        ballotLock.writeLock().lock();
+        try {
+            log = store.journal();
+            seq = log.voteLimitChanged(id, limit);
+            applyVoteLimit(limit);
+        } finally {
+            ballotLock.writeLock().unlock();
+        }
+        log.sync(seq);
+        Metrics.SET_LIMIT.record(System.nanoTime() - started);
+    }
+
+    EventView closeVoting() {
+        long started = System.nanoTime();
+        StoreJournal log;
+        long seq = 0;
+        EventView snapshot;
+        ballotLock.writeLock().lock();
+        try {
+            log = store.journal();
+            if (!votingClosed) {
+                seq = log.votingClosed(id);
+                applyVotingClosed();
+            }
+            snapshot = captureView();
+        } finally {
+            ballotLock.writeLock().unlock();
+        }
+        log.sync(seq);
+        Metrics.CLOSE_VOTING.record(System.nanoTime() - started);
+        return snapshot;
+    }
+
+    /** UncheckedIOException: якщо збій журналу вже відомий, бюлетень відкинуто; якщо виник під час запису — зараховано лише в пам'яті. */
+    BallotResult castBallot(User user, int[] songIds) {
+        long started = System.nanoTime();
+        BallotResult result = submitBallot(user, songIds);
+        Metrics.ballot(result, songIds.length, System.nanoTime() - started);
+        return result;
+    }
+
+    private BallotResult submitBallot(User user, int[] songIds) {
+        StoreJournal log;
+        long seq;
+        ballotLock.readLock().lock();
+        try {
+            if (votingClosed) {
+                return BallotResult.VOTING_CLOSED;
+            }
+            if (votes.hasVoted(user.id)) {
+                return BallotResult.ALREADY_VOTED;
+            }
+            if (songIds.length < 1 || songIds.length > maxVoteLimit) {
+                return BallotResult.INVALID_SELECTION;
+            }
+            Song[] selected = new Song[songIds.length];
+            for (int i = 0; i < songIds.length; i++) {
+                for (int j = 0; j < i; j++) {
+                    if (songIds[j] == songIds[i]) {
+                        return BallotResult.INVALID_SELECTION;
+                    }
+                }
+                selected[i] = songsById.get(songIds[i]);
+                if (selected[i] == null) {
+                    return BallotResult.UNKNOWN_SONG;
+                }
+            }
+            if (!votes.markVoted(user.id)) {
+                return BallotResult.ALREADY_VOTED;
+            }
+            log = store.journal();
+            try {
+                seq = log.ballotCast(id, user.id, songIds);
+            } catch (RuntimeException ex) {
+                votes.unmarkVoted(user.id);
+                throw ex;
+            }
+            beginChange();
+            for (Song song : selected) {
+                votes.add(song.id, user.id);
+                song.incrementVotes();
+                leaderboard.update(song);
+            }
+            ballotsAccepted.increment();
+            changed();
+        } finally {
+            ballotLock.readLock().unlock();
+        }
+        log.sync(seq);
+        return BallotResult.ACCEPTED;
     }
 
     void resetVotesForSong(int songId) {
-        votes.removeIf(v -> v.songId == songId);
-        Song song = findSongById(songId);
+        StoreJournal log;
+        long seq;
+        ballotLock.writeLock().lock();
+        try {
+            log = store.journal();
+            seq = log.songVotesReset(id, songId);
+            applyResetVotes(songId);
+        } finally {
+            ballotLock.writeLock().unlock();
+        }
+        log.sync(seq);
+    }
+
+    int recalculateVotes() {
+        long started = System.nanoTime();
+        ballotLock.writeLock().lock();
+        try {
+            int corrected = 0;
+            for (Song song : songs) {
+                int actual = votes.count(song.id);
+                if (song.votes != actual) {
+                    if (corrected == 0) {
+                        beginChange();
+                    }
+                    song.votes = actual;
+                    leaderboard.update(song);
+                    corrected++;
+                }
+            }
+            if (corrected > 0) {
+                changed();
+            }
+            return corrected;
+        } finally {
+            ballotLock.writeLock().unlock();
+            Metrics.RECALCULATE.record(System.nanoTime() - started);
+        }
+    }
+
+    VoteAudit.Report audit() {
+        StoreSnapshot.EventState state;
+        ballotLock.writeLock().lock();
+        try {
+            state = captureState();
+        } finally {
+            ballotLock.writeLock().unlock();
+        }
+        return VoteAudit.run(state);
+    }
+
+    void lockExclusive() {
+        ballotLock.writeLock().lock();
+    }
+
+    void unlockExclusive() {
+        ballotLock.writeLock().unlock();
+    }
+
+    StoreSnapshot.EventState captureState() {
+        Song[] songArray = songs.toArray(new Song[0]);
+        int[] tallies = new int[songArray.length];
+        for (int i = 0; i < songArray.length; i++) {
+            tallies[i] = songArray[i].votes;
+        }
+        int[] voteUserIds = new int[votes.totalVotes()];
+        int[] voteSongIds = new int[voteUserIds.length];
+        int n = 0;
+        for (Song song : songArray) {
+            n = votes.copyVotes(song.id, voteUserIds, voteSongIds, n);
+        }
+        return new StoreSnapshot.EventState(id, name, maxVoteLimit, ballotLimit(), votingClosed, votes.votedUserIds(),
+                songArray, tallies, voteUserIds, voteSongIds);
+    }
+
+    void restoreState(StoreSnapshot.EventState state) {
+        beginChange();
+        for (int userId : state.votedUserIds) {
+            votes.markVoted(userId);
+            ballotsAccepted.increment();
+        }
+        for (int i = 0; i < state.songs.length; i++) {
+            Song song = state.songs[i];
+            song.votes = state.tallies[i];
+            songsById.put(song.id, song);
+            leaderboard.add(song);
+            searchIndex.add(song);
+        }
+        songs.addAll(Arrays.asList(state.songs));
+        for (int i = 0; i < state.voteUserIds.length; i++) {
+            votes.add(state.voteSongIds[i], state.voteUserIds[i]);
+        }
+        maxVoteLimit = state.maxVoteLimit;
+        ballotLimit = state.ballotLimit;
+        ballotsAtLimit = ballotsAccepted.sum();
+        votingClosed = state.votingClosed;
+        changed();
+    }
+
+    void applySong(Song song) {
+        beginChange();
+        songsById.put(song.id, song);
+        songs.add(song);
+        leaderboard.add(song);
+        searchIndex.add(song);
+        changed();
+    }
+
+    void applyDeleteSong(int songId) {
+        Song song = songsById.remove(songId);
+        if (song != null) {
+            beginChange();
+            leaderboard.remove(song);
+            searchIndex.remove(songId);
+            songs.remove(song);
+            votes.dropSong(songId);
+            changed();
+        }
+    }
+
+    void applyBallot(int userId, int[] songIds) {
+        votes.markVoted(userId);
+        beginChange();
+        ballotsAccepted.increment();
+        for (int songId : songIds) {
+            Song song = songsById.get(songId);
+            if (song != null) {
+                votes.add(songId, userId);
+                song.incrementVotes();
+                leaderboard.update(song);
+            }
+        }
+        changed();
+    }
+
+    void applyVoteLimit(int limit) {
+        beginChange();
+        ballotLimit = ballotLimit();
+        ballotsAtLimit = ballotsAccepted.sum();
+        maxVoteLimit = limit;
+        changed();
+    }
+
+    private int ballotLimit() {
+        return ballotsAccepted.sum() > ballotsAtLimit ? Math.max(ballotLimit, maxVoteLimit) : ballotLimit;
+    }
+
+    void applyVotingClosed() {
+        beginChange();
+        votingClosed = true;
+        changed();
+    }
+
+    void applyResetVotes(int songId) {
+        beginChange();
+        votes.dropSong(songId);
+        Song song = songsById.get(songId);
         if (song != null) {
-            song.votes = (int) votes.stream().filter(v -> v.songId == songId).count();
+            song.votes = 0;
+            leaderboard.update(song);
         }
+        changed();
+    }
+
+    @Override
+    public String toString() {
+        return name;
     }
+}
+
+final class EventView {
+    static final int LEADERS = 10;
+
+    final long version;
+    final List<Song> songs;
+    /** Голоси songs.get(i) на момент зрізу. */
+    final int[] votes;
+    final int maxVoteLimit;
+    final boolean votingClosed;
+    final long ballotsAccepted;
+    final List<Song> leaders;
+    final int[] leaderVotes;
+
+    EventView(long version, List<Song> songs, int[] votes, int maxVoteLimit, boolean votingClosed,
+              long ballotsAccepted, List<Song> leaders, int[] leaderVotes) {
+        this.version = version;
+        this.songs = songs;
+        this.votes = votes;
+        this.maxVoteLimit = maxVoteLimit;
+        this.votingClosed = votingClosed;
+        this.ballotsAccepted = ballotsAccepted;
+        this.leaders = leaders;
+        this.leaderVotes = leaderVotes;
+    }
+}
+
+/** Пісню переставляє один потік; інші не чекають — він перечитає лічильник, перш ніж відпустити пісню. */
+final class Leaderboard {
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<Song, Slot> slots = new ConcurrentHashMap<>();
+
+    void add(Song song) {
+        Slot slot = new Slot(new Entry(song, song.votes));
+        slots.put(song, slot);
+        ranking.add(slot.entry);
+    }
+
+    void update(Song song) {
+        Slot slot = slots.get(song);
+        if (slot == null) {
+            return;
+        }
+        while (slot.entry.votes != song.votes && slot.busy.compareAndSet(false, true)) {
+            Entry old = slot.entry;
+            Entry entry = new Entry(song, song.votes);
+            if (entry.votes != old.votes) {
+                ranking.add(entry);
+                ranking.remove(old);
+                slot.entry = entry;
+            }
+            slot.busy.set(false);
+        }
+    }
+
+    void remove(Song song) {
+        Slot slot = slots.remove(song);
+        if (slot != null) {
+            ranking.remove(slot.entry);
+        }
+    }
+
+    List<Song> top(int k) {
+        List<Song> result = new ArrayList<>(Math.min(k, slots.size()));
+        Iterator<Entry> it = ranking.iterator();
+        while (result.size() < k && it.hasNext()) {
+            Entry entry = it.next();
+            Slot slot = slots.get(entry.song);
+            if (slot != null && slot.entry == entry) {
+                result.add(entry.song);
+            }
+        }
+        return result;
+    }
+
+    private static final class Slot {
+        final AtomicBoolean busy = new AtomicBoolean();
+        volatile Entry entry;
+
+        Slot(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final Song song;
+        final int votes;
+
+        Entry(Song song, int votes) {
+            this.song = song;
+            this.votes = votes;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (votes != other.votes) {
+                return Integer.compare(other.votes, votes);
+            }
+            int byTitle = song.title.compareToIgnoreCase(other.song.title);
+            return byTitle != 0 ? byTitle : Integer.compare(song.id, other.song.id);
+        }
+    }
+}
+
+final class VoteTable {
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_BITS = 1 << PAGE_SHIFT;
 
-    void recalculateAllVotes() {
+    private final AtomicReferenceArray<AtomicLongArray> votedPages =
+            new AtomicReferenceArray<>((Integer.MAX_VALUE >>> PAGE_SHIFT) + 1);
+    private final Map<Integer, Voters> votersBySong = new ConcurrentHashMap<>();
+
+    boolean hasVoted(int userId) {
+        AtomicLongArray page = votedPages.get(userId >>> PAGE_SHIFT);
+        return page != null && (page.get((userId & (PAGE_BITS - 1)) >>> 6) & (1L << userId)) != 0;
+    }
+
+    /** Позначає слухача як такого, що проголосував; false, якщо біт уже був встановлений. */
+    boolean markVoted(int userId) {
+        int pageIndex = userId >>> PAGE_SHIFT;
+        AtomicLongArray page = votedPages.get(pageIndex);
+        if (page == null) {
+            votedPages.compareAndSet(pageIndex, null, new AtomicLongArray(PAGE_BITS / 64));
+            page = votedPages.get(pageIndex);
+        }
+        int word = (userId & (PAGE_BITS - 1)) >>> 6;
+        long bit = 1L << userId;
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(word, current, current | bit));
+        return true;
+    }
+
+    void unmarkVoted(int userId) {
+        AtomicLongArray page = votedPages.get(userId >>> PAGE_SHIFT);
+        if (page != null) {
+            int word = (userId & (PAGE_BITS - 1)) >>> 6;
+            long bit = 1L << userId;
+            long current;
+            do {
+                current = page.get(word);
+            } while (!page.compareAndSet(word, current, current & ~bit));
+        }
+    }
+
+    int[] votedUserIds() {
+        int[] ids = new int[16];
+        int n = 0;
+        for (int p = 0; p < votedPages.length(); p++) {
+            AtomicLongArray page = votedPages.get(p);
+            if (page == null) {
+                continue;
+            }
+            for (int w = 0; w < page.length(); w++) {
+                long bits = page.get(w);
+                while (bits != 0) {
+                    if (n == ids.length) {
+                        ids = Arrays.copyOf(ids, n * 2);
+                    }
+                    ids[n++] = (p << PAGE_SHIFT) | (w << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    void add(int songId, int userId) {
+        votersBySong.computeIfAbsent(songId, id -> new Voters()).add(userId);
+    }
+
+    int count(int songId) {
+        Voters voters = votersBySong.get(songId);
+        return voters == null ? 0 : voters.size();
+    }
+
+    int totalVotes() {
+        int total = 0;
+        for (Voters voters : votersBySong.values()) {
+            total += voters.size();
+        }
+        return total;
+    }
+
+    /** Відкидає всі голоси за пісню; біти «вже голосував» її слухачів лишаються. */
+    int dropSong(int songId) {
+        Voters voters = votersBySong.remove(songId);
+        return voters == null ? 0 : voters.size();
+    }
+
+    int copyVotes(int songId, int[] userIds, int[] songIds, int offset) {
+        Voters voters = votersBySong.get(songId);
+        if (voters == null) {
+            return offset;
+        }
+        int n = voters.copyTo(userIds, offset);
+        Arrays.fill(songIds, offset, offset + n, songId);
+        return offset + n;
+    }
+
+    private static final class Voters {
+        private int[] userIds = new int[4];
+        private int size;
+
+        synchronized void add(int userId) {
+            if (size == userIds.length) {
+                userIds = Arrays.copyOf(userIds, size + (size >> 1));
+            }
+            userIds[size++] = userId;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int copyTo(int[] target, int offset) {
+            System.arraycopy(userIds, 0, target, offset, size);
+            return size;
+        }
+    }
+}
+
+/** Незалежний паралельний перерахунок голосів події перед публікацією програми. */
+final class VoteAudit {
+    private static final int MIN_CHUNK = 1 << 16;
+    private static final int MAX_LISTED = 10;
+
+    private VoteAudit() {}
+
+    static Report run(StoreSnapshot.EventState state) {
+        long started = System.nanoTime();
+        Song[] songs = state.songs;
+        int maxId = 0;
         for (Song song : songs) {
-            song.votes = (int) votes.stream().filter(v -> v.songId == song.id).count();
+            maxId = Math.max(maxId, song.id);
+        }
+        int[] indexOf = new int[maxId + 1];
+        Arrays.fill(indexOf, -1);
+        for (int i = 0; i < songs.length; i++) {
+            indexOf[songs[i].id] = i;
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int[] songIds = state.voteSongIds;
+        int chunk = Math.max(MIN_CHUNK, songIds.length / (pool.getParallelism() * 4) + 1);
+        int[] recount = pool.invoke(new Recount(songIds, indexOf, songs.length, 0, songIds.length, chunk));
+
+        Report report = new Report(state.name, songIds.length, songs.length);
+        for (int i = 0; i < songs.length; i++) {
+            if (recount[i] != state.tallies[i]) {
+                report.mismatches++;
+                if (report.mismatchLines.size() < MAX_LISTED) {
+                    report.mismatchLines.add(String.format(Locale.ROOT, "#%d %s: лічильник %d, перераховано %d",
+                            songs[i].id, songs[i].title, state.tallies[i], recount[i]));
+                }
+            }
+        }
+        checkVoters(state, report);
+        report.nanos = System.nanoTime() - started;
+        Metrics.AUDIT.record(report.nanos);
+        return report;
+    }
+
+    private static void checkVoters(StoreSnapshot.EventState state, Report report) {
+        int[] userIds = state.voteUserIds;
+        long[] pairs = new long[userIds.length];
+        Arrays.parallelSetAll(pairs, i -> (long) userIds[i] << 32 | (state.voteSongIds[i] & 0xFFFFFFFFL));
+        Arrays.parallelSort(pairs);
+
+        int i = 0;
+        while (i < pairs.length) {
+            int userId = (int) (pairs[i] >>> 32);
+            int start = i;
+            i++;
+            while (i < pairs.length && (int) (pairs[i] >>> 32) == userId) {
+                if (pairs[i] == pairs[i - 1]) {
+                    report.duplicateVotes++;
+                }
+                i++;
+            }
+            if (i - start > state.ballotLimit) {
+                report.overLimit++;
+                if (report.overLimitUsers.size() < MAX_LISTED) {
+                    report.overLimitUsers.add(userId);
+                }
+            }
+            if (Arrays.binarySearch(state.votedUserIds, userId) < 0) {
+                report.unmarkedVoters++;
+            }
+        }
+    }
+
+    private static final class Recount extends RecursiveTask<int[]> {
+        private final int[] songIds;
+        private final int[] indexOf;
+        private final int songCount;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Recount(int[] songIds, int[] indexOf, int songCount, int from, int to, int chunk) {
+            this.songIds = songIds;
+            this.indexOf = indexOf;
+            this.songCount = songCount;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from > chunk) {
+                int mid = (from + to) >>> 1;
+                Recount right = new Recount(songIds, indexOf, songCount, mid, to, chunk);
+                right.fork();
+                int[] counts = new Recount(songIds, indexOf, songCount, from, mid, chunk).compute();
+                int[] other = right.join();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += other[i];
+                }
+                return counts;
+            }
+            // captureState бере голоси лише за пісні каталогу, тож індекс завжди знайдеться.
+            int[] counts = new int[songCount];
+            for (int i = from; i < to; i++) {
+                counts[indexOf[songIds[i]]]++;
+            }
+            return counts;
+        }
+    }
+
+    static final class Report {
+        final String eventName;
+        final int votes;
+        final int songs;
+        int mismatches;
+        final List<String> mismatchLines = new ArrayList<>();
+        int overLimit;
+        final List<Integer> overLimitUsers = new ArrayList<>();
+        int duplicateVotes;
+        int unmarkedVoters;
+        long nanos;
+
+        Report(String eventName, int votes, int songs) {
+            this.eventName = eventName;
+            this.votes = votes;
+            this.songs = songs;
+        }
+
+        boolean clean() {
+            return mismatches == 0 && overLimit == 0 && duplicateVotes == 0 && unmarkedVoters == 0;
+        }
+
+        String summary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "Аудит голосів «%s»: %d голосів за %d пісень, %.1f мс — %s%n",
+                    eventName, votes, songs, nanos / 1e6, clean() ? "розбіжностей немає" : "є розбіжності"));
+            if (mismatches > 0) {
+                sb.append("Лічильники не збігаються з бюлетенями: ").append(mismatches).append(" пісень\n");
+                for (String line : mismatchLines) {
+                    sb.append("  ").append(line).append('\n');
+                }
+            }
+            if (overLimit > 0) {
+                sb.append("Слухачів понад ліміт: ").append(overLimit).append(", id: ").append(overLimitUsers).append('\n');
+            }
+            if (duplicateVotes > 0) {
+                sb.append("Повторних голосів за ту саму пісню: ").append(duplicateVotes).append('\n');
+            }
+            if (unmarkedVoters > 0) {
+                sb.append("Слухачів із голосами, але без позначки бюлетеня: ").append(unmarkedVoters).append('\n');
+            }
+            return sb.toString();
         }
     }
 }
 
+/** Триграмний індекс назв і виконавців; токени коротші за три літери шукаються за початком слова. */
+final class SongSearchIndex {
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Integer, String> texts = new HashMap<>();
+
+    synchronized void addAll(List<Song> batch) {
+        for (Song song : batch) {
+            add(song);
+        }
+    }
+
+    synchronized void add(Song song) {
+        String text = normalize(song.title) + normalize(song.artist);
+        texts.put(song.id, text);
+        for (long gram : grams(text)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(song.id);
+        }
+    }
+
+    synchronized void remove(int songId) {
+        String text = texts.remove(songId);
+        if (text == null) {
+            return;
+        }
+        for (long gram : grams(text)) {
+            Postings list = postings.get(gram);
+            if (list != null && list.remove(songId) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /** Id пісень, що відповідають запиту; null для порожнього запиту (без фільтра). */
+    synchronized BitSet search(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        String[] tokens = normalized.substring(1).split(" ");
+        List<Postings> lists = new ArrayList<>();
+        for (String token : tokens) {
+            for (long gram : queryGrams(token)) {
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    return new BitSet();
+                }
+                lists.add(list);
+            }
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        BitSet result = new BitSet();
+        Postings smallest = lists.get(0);
+        candidates:
+        for (int i = 0; i < smallest.size; i++) {
+            int songId = smallest.ids[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(songId)) {
+                    continue candidates;
+                }
+            }
+            String text = texts.get(songId);
+            for (String token : tokens) {
+                if (!text.contains(token.length() >= 3 ? token : " " + token)) {
+                    continue candidates;
+                }
+            }
+            result.set(songId);
+        }
+        return result;
+    }
+
+    /** Нормалізований текст: кожне слово з пробілом попереду, напр. " океан ельзи". */
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 1);
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '’' || c == 'ʼ' || c == '‘' || c == '`') {
+                c = '\'';
+            }
+            if (Character.isLetterOrDigit(c) || c == '\'') {
+                if (!inWord) {
+                    sb.append(' ');
+                    inWord = true;
+                }
+                sb.append(Character.toLowerCase(c));
+            } else {
+                inWord = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long[] grams(String text) {
+        long[] grams = new long[2 * text.length()];
+        int n = 0;
+        for (int i = 0; i + 1 < text.length(); i++) {
+            char c0 = text.charAt(i);
+            char c1 = text.charAt(i + 1);
+            if (c0 == ' ') {
+                grams[n++] = gram(c0, c1, '\0');
+            }
+            if (i + 2 < text.length() && c1 != ' ' && text.charAt(i + 2) != ' ') {
+                grams[n++] = gram(c0, c1, text.charAt(i + 2));
+            }
+        }
+        Arrays.sort(grams, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static long[] queryGrams(String token) {
+        if (token.length() == 1) {
+            return new long[] {gram(' ', token.charAt(0), '\0')};
+        }
+        if (token.length() == 2) {
+            return new long[] {gram(' ', token.charAt(0), token.charAt(1))};
+        }
+        long[] result = new long[token.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = gram(token.charAt(i), token.charAt(i + 1), token.charAt(i + 2));
+        }
+        return result;
+    }
+
+    private static long gram(char c0, char c1, char c2) {
+        return ((long) c0 << 32) | ((long) c1 << 16) | c2;
+    }
+
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            int at = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                at = -at - 1;
+            } else if (at < size) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
+
+/** Викликається під локом події на кожен бюлетень, тож має лише позначити стан застарілим. */
+interface StoreListener {
+    void eventChanged(ConcertEvent event);
+}
+
 class LoginFrame extends JFrame {
     private final DataStore dataStore;
     private final JTextField loginField = new JTextField();
@@ -171,38 +1684,176 @@ class LoginFrame extends JFrame {
     private void login() {
         String login = loginField.getText().trim();
         String password = new String(passwordField.getPassword());
+        long started = System.nanoTime();
         User user = dataStore.findUser(login, password);
         if (user == null) {
+            Metrics.UI_LOGIN.record(System.nanoTime() - started);
             JOptionPane.showMessageDialog(this, "Невірний логін або пароль.", "Помилка", JOptionPane.ERROR_MESSAGE);
             return;
         }
         new MainFrame(dataStore, user).setVisible(true);
         dispose();
+        Metrics.UI_LOGIN.record(System.nanoTime() - started);
     }
 
     private void register() {
         String login = loginField.getText().trim();
         String password = new String(passwordField.getPassword());
 
-        if (login.isBlank() || password.isBlank()) {
-            JOptionPane.showMessageDialog(this, "Заповніть логін і пароль.", "Помилка", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-        if (dataStore.loginExists(login)) {
-            JOptionPane.showMessageDialog(this, "Користувач із таким логіном вже існує.", "Помилка", JOptionPane.WARNING_MESSAGE);
-            return;
+        if (login.isBlank() || password.isBlank()) {
+            JOptionPane.showMessageDialog(this, "Заповніть логін і пароль.", "Помилка", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (dataStore.loginExists(login)) {
+            JOptionPane.showMessageDialog(this, "Користувач із таким логіном вже існує.", "Помилка", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        if (!dataStore.registerUser(login, password)) {
+            JOptionPane.showMessageDialog(this, "Користувач із таким логіном вже існує.", "Помилка", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        JOptionPane.showMessageDialog(this, "Реєстрація успішна. Тепер увійдіть у систему.");
+    }
+}
+
+class SongTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"ID", "Назва", "Виконавець", "Тривалість (хв)", "Голоси"};
+
+    // Незмінний зріз: фонові бюлетені не змінюють рядки під час малювання.
+    private EventView view;
+    // Поки таблиці повідомляють про видалені рядки, вона бачить проміжний стан: рядки view за індексами.
+    private int[] shownRows;
+    private int shownCount;
+
+    SongTableModel(EventView view) {
+        this.view = view;
+    }
+
+    EventView view() {
+        return view;
+    }
+
+    Song songAt(int row) {
+        return view.songs.get(modelIndex(row));
+    }
+
+    void update(EventView next) {
+        EventView previous = view;
+        if (next == previous) {
+            return;
+        }
+        int[] keptFrom = deleteMissingRows(next);
+        int kept = keptFrom == null ? previous.songs.size() : keptFrom.length;
+        view = next;
+        int row = 0;
+        while (row < kept) {
+            if (next.votes[row] == previous.votes[keptFrom == null ? row : keptFrom[row]]) {
+                row++;
+                continue;
+            }
+            int first = row;
+            while (row < kept && next.votes[row] != previous.votes[keptFrom == null ? row : keptFrom[row]]) {
+                row++;
+            }
+            fireTableRowsUpdated(first, row - 1);
+        }
+        if (next.songs.size() > kept) {
+            fireTableRowsInserted(kept, next.songs.size() - 1);
+        }
+    }
+
+    // Індекс у view кожного збереженого рядка або null, якщо видалень немає.
+    private int[] deleteMissingRows(EventView next) {
+        List<Song> previous = view.songs;
+        int n = previous.size();
+        if (n <= next.songs.size() && (n == 0 || next.songs.get(n - 1) == previous.get(n - 1))) {
+            return null;
+        }
+        int[] keptFrom = new int[Math.min(n, next.songs.size())];
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            if (kept < keptFrom.length && next.songs.get(kept) == previous.get(i)) {
+                keptFrom[kept++] = i;
+            }
+        }
+        shownRows = new int[n];
+        for (int i = 0; i < n; i++) {
+            shownRows[i] = i;
+        }
+        shownCount = n;
+        int end = n;
+        for (int k = kept - 1; k >= -1; k--) {
+            int start = k < 0 ? 0 : keptFrom[k] + 1;
+            if (start < end) {
+                System.arraycopy(shownRows, end, shownRows, start, shownCount - end);
+                shownCount -= end - start;
+                fireTableRowsDeleted(start, end - 1);
+            }
+            end = k < 0 ? 0 : keptFrom[k];
+        }
+        shownRows = null;
+        return Arrays.copyOf(keptFrom, kept);
+    }
+
+    private int modelIndex(int row) {
+        return shownRows == null ? row : shownRows[row];
+    }
+
+    @Override
+    public int getRowCount() {
+        return shownRows == null ? view.songs.size() : shownCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 1 || column == 2 ? String.class : Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        row = modelIndex(row);
+        Song song = view.songs.get(row);
+        switch (column) {
+            case 0:
+                return song.id;
+            case 1:
+                return song.title;
+            case 2:
+                return song.artist;
+            case 3:
+                return song.durationMinutes;
+            default:
+                return view.votes[row];
         }
-
-        dataStore.registerUser(login, password);
-        JOptionPane.showMessageDialog(this, "Реєстрація успішна. Тепер увійдіть у систему.");
     }
 }
 
 class MainFrame extends JFrame {
+    private static final int STANDINGS_SIZE = EventView.LEADERS;
+    // ~30 кадрів/с незалежно від потоку бюлетенів.
+    private static final int FRAME_MILLIS = 33;
+
     private final DataStore dataStore;
     private final User user;
-    private final DefaultTableModel songsModel;
+    // Читається й у потоках, що сповіщають про зміни, — див. eventChanged.
+    private volatile ConcertEvent event;
+    private SongTableModel songsModel;
     private final JTable songsTable;
+    private TableRowSorter<SongTableModel> songsSorter;
+    private final JComboBox<ConcertEvent> eventBox = new JComboBox<>();
+    private final JTextField searchField = new JTextField();
+    private BitSet searchMatches;
     private final JTextArea outputArea = new JTextArea();
     private final JLabel statusLabel = new JLabel();
 
@@ -211,6 +1862,10 @@ class MainFrame extends JFrame {
     private final JButton voteButton = uiButton("Проголосувати");
     private final JButton saveLimitButton = uiButton("Зберегти ліміт");
     private final JButton closeVotingButton = uiButton("Сформувати концерт");
+    private final JButton importSongsButton = uiButton("Імпорт пісень CSV");
+    private final JButton importUsersButton = uiButton("Імпорт слухачів CSV");
+    private final JButton newEventButton = uiButton("Нова подія");
+    private final JButton finalizeAllButton = uiButton("Сформувати всі закриті");
 
     private final JTextField titleField = new JTextField();
     private final JTextField artistField = new JTextField();
@@ -219,6 +1874,23 @@ class MainFrame extends JFrame {
     private final JTextField limitField = new JTextField();
     private final JTextField concertDurationField = new JTextField("90");
 
+    private final DefaultListModel<String> standings = new DefaultListModel<>();
+    private final JTextArea votingHint = new JTextArea();
+
+    private final JButton cancelFinalizeButton = uiButton("Скасувати");
+    private final JProgressBar finalizeProgress = new JProgressBar(0, 100);
+
+    private ProgramSelector programPlan;
+    private EventView planView;
+    private FinalizeWorker finalizeWorker;
+    private FinalizeAllWorker finalizeAllWorker;
+    private ImportWorker importWorker;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final Timer refreshTimer = new Timer(FRAME_MILLIS, e -> {
+        refreshPending.set(false);
+        refreshView();
+    });
+
     MainFrame(DataStore dataStore, User user) {
         this.dataStore = dataStore;
         this.user = user;
@@ -228,13 +1900,11 @@ class MainFrame extends JFrame {
         setLocationRelativeTo(null);
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
-        songsModel = new DefaultTableModel(new Object[]{"ID", "Назва", "Виконавець", "Тривалість (хв)", "Голоси"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        event = dataStore.defaultEvent();
+        songsModel = new SongTableModel(event.view());
         songsTable = new JTable(songsModel);
+        songsSorter = new TableRowSorter<>(songsModel);
+        songsTable.setRowSorter(songsSorter);
         songsTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         songsTable.getSelectionModel().addListSelectionListener(e -> updateButtonState());
 
@@ -242,11 +1912,104 @@ class MainFrame extends JFrame {
         outputArea.setFont(new Font("Monospaced", Font.PLAIN, 13));
 
         setLayout(new BorderLayout(8, 8));
+        add(buildEventBar(), BorderLayout.NORTH);
         add(buildTabs(), BorderLayout.CENTER);
         add(buildBottom(), BorderLayout.SOUTH);
 
-        refreshSongs();
         updateButtonState();
+        refreshTimer.setRepeats(false);
+        dataStore.addListener(this::eventChanged);
+    }
+
+    // Зміни до спрацювання таймера зливаються в один кадр.
+    private void eventChanged(ConcertEvent changed) {
+        if (changed == event && refreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(refreshTimer::start);
+        }
+    }
+
+    private void refreshView() {
+        EventView previous = songsModel.view();
+        EventView view = event.view();
+        if (view == previous) {
+            return;
+        }
+        long started = System.nanoTime();
+        songsModel.update(view);
+        if (searchMatches != null && view.songs != previous.songs) {
+            applySearch();
+        }
+        refreshStandings(view);
+        updateStatus(view);
+        updateButtonState();
+        Metrics.UI_REFRESH.record(System.nanoTime() - started);
+    }
+
+    private void refreshStandings(EventView view) {
+        if (user.role != Role.ADMIN) {
+            return;
+        }
+        standings.clear();
+        for (int i = 0; i < view.leaders.size(); i++) {
+            Song song = view.leaders.get(i);
+            standings.addElement(String.format(Locale.ROOT, "%2d. %s — %s (%d)", i + 1, song.title, song.artist, view.leaderVotes[i]));
+        }
+    }
+
+    private JPanel buildEventBar() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 8));
+        panel.add(new JLabel("Подія"));
+        eventBox.setPreferredSize(new Dimension(260, 30));
+        reloadEvents();
+        eventBox.addActionListener(e -> {
+            ConcertEvent selected = (ConcertEvent) eventBox.getSelectedItem();
+            if (selected != null && selected != event) {
+                selectEvent(selected);
+            }
+        });
+        panel.add(eventBox);
+        if (user.role == Role.ADMIN) {
+            panel.add(newEventButton);
+            panel.add(finalizeAllButton);
+            newEventButton.addActionListener(e -> createEvent());
+            finalizeAllButton.addActionListener(e -> finalizeAllClosed());
+        }
+        return panel;
+    }
+
+    private void reloadEvents() {
+        eventBox.setModel(new DefaultComboBoxModel<>(dataStore.events().toArray(new ConcertEvent[0])));
+        eventBox.setSelectedItem(event);
+    }
+
+    private void selectEvent(ConcertEvent selected) {
+        event = selected;
+        songsModel = new SongTableModel(event.view());
+        songsSorter = new TableRowSorter<>(songsModel);
+        songsTable.setModel(songsModel);
+        songsTable.setRowSorter(songsSorter);
+        applySearch();
+        limitField.setText(String.valueOf(event.maxVoteLimit()));
+        votingHint.setText(votingHintText());
+        outputArea.setText("");
+        finalizeProgress.setValue(0);
+        refreshStandings(songsModel.view());
+        updateStatus(songsModel.view());
+        updateButtonState();
+    }
+
+    private void createEvent() {
+        String name = JOptionPane.showInputDialog(this, "Назва події:", "Нова подія", JOptionPane.PLAIN_MESSAGE);
+        if (name == null) {
+            return;
+        }
+        try {
+            ConcertEvent created = dataStore.createEvent(name);
+            reloadEvents();
+            eventBox.setSelectedItem(created);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Помилка", JOptionPane.WARNING_MESSAGE);
+        }
     }
 
     private JTabbedPane buildTabs() {
@@ -264,6 +2027,27 @@ class MainFrame extends JFrame {
         JPanel panel = new JPanel(new BorderLayout(8, 8));
         panel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
 
+        JPanel search = new JPanel(new BorderLayout(8, 8));
+        search.add(new JLabel("Пошук"), BorderLayout.WEST);
+        search.add(searchField, BorderLayout.CENTER);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applySearch();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applySearch();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applySearch();
+            }
+        });
+
+        panel.add(search, BorderLayout.NORTH);
         panel.add(new JScrollPane(songsTable), BorderLayout.CENTER);
 
         JPanel control = new JPanel(new GridLayout(3, 4, 8, 8));
@@ -276,8 +2060,14 @@ class MainFrame extends JFrame {
         control.add(addButton);
         control.add(deleteButton);
         control.add(voteButton);
+        if (user.role == Role.ADMIN) {
+            control.add(importSongsButton);
+            control.add(importUsersButton);
+        }
 
         addButton.addActionListener(e -> addSong());
+        importSongsButton.addActionListener(e -> importCsv(true));
+        importUsersButton.addActionListener(e -> importCsv(false));
         deleteButton.addActionListener(e -> deleteSong());
         voteButton.addActionListener(e -> voteForSongs());
 
@@ -285,40 +2075,68 @@ class MainFrame extends JFrame {
         return panel;
     }
 
+    private void applySearch() {
+        searchMatches = event.searchSongs(searchField.getText());
+        if (searchMatches == null) {
+            songsSorter.setRowFilter(null);
+            return;
+        }
+        BitSet matches = searchMatches;
+        songsSorter.setRowFilter(new RowFilter<SongTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends SongTableModel, ? extends Integer> entry) {
+                return matches.get(entry.getModel().songAt(entry.getIdentifier()).id);
+            }
+        });
+    }
+
     private JPanel buildUserPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("Пояснення"));
-        JTextArea info = new JTextArea();
-        info.setEditable(false);
-        info.setText("Оберіть від 1 до " + dataStore.maxVoteLimit + " пісень у вкладці 'Список пісень'\n"
-                + "та натисніть 'Проголосувати'. Повторне голосування заборонено.");
-        panel.add(info, BorderLayout.CENTER);
+        votingHint.setEditable(false);
+        votingHint.setText(votingHintText());
+        panel.add(votingHint, BorderLayout.CENTER);
         return panel;
     }
 
+    private String votingHintText() {
+        return "Оберіть від 1 до " + event.maxVoteLimit() + " пісень у вкладці 'Список пісень'\n"
+                + "та натисніть 'Проголосувати'. Повторно голосувати в тій самій події заборонено.";
+    }
+
     private JPanel buildAdminPanel() {
         JPanel panel = new JPanel(new BorderLayout(8, 8));
         panel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
 
         JPanel top = new JPanel(new GridLayout(2, 4, 8, 8));
-        limitField.setText(String.valueOf(dataStore.maxVoteLimit));
+        limitField.setText(String.valueOf(event.maxVoteLimit()));
         top.add(new JLabel("Ліміт голосів N"));
         top.add(limitField);
         top.add(saveLimitButton);
-        top.add(new JLabel());
+        top.add(finalizeProgress);
 
         top.add(new JLabel("Тривалість концерту (хв)"));
         top.add(concertDurationField);
         top.add(closeVotingButton);
-        top.add(new JLabel());
+        top.add(cancelFinalizeButton);
 
         saveLimitButton.addActionListener(e -> saveLimit());
         closeVotingButton.addActionListener(e -> finalizeConcert());
+        cancelFinalizeButton.addActionListener(e -> cancelFinalize());
+        finalizeProgress.setStringPainted(true);
 
         outputArea.setBorder(BorderFactory.createTitledBorder("Програма концерту"));
 
+        JList<String> standingsList = new JList<>(standings);
+        standingsList.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        JScrollPane standingsPane = new JScrollPane(standingsList);
+        standingsPane.setBorder(BorderFactory.createTitledBorder("Поточний рейтинг (топ-" + STANDINGS_SIZE + ")"));
+        standingsPane.setPreferredSize(new Dimension(320, 0));
+        refreshStandings(songsModel.view());
+
         panel.add(top, BorderLayout.NORTH);
         panel.add(new JScrollPane(outputArea), BorderLayout.CENTER);
+        panel.add(standingsPane, BorderLayout.EAST);
         return panel;
     }
 
@@ -326,7 +2144,7 @@ class MainFrame extends JFrame {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createEmptyBorder(0, 8, 8, 8));
         panel.add(statusLabel, BorderLayout.WEST);
-        updateStatus();
+        updateStatus(songsModel.view());
         return panel;
     }
 
@@ -337,51 +2155,39 @@ class MainFrame extends JFrame {
         return button;
     }
 
-    private void refreshSongs() {
-        dataStore.recalculateAllVotes();
-        songsModel.setRowCount(0);
-        for (Song song : dataStore.songs) {
-            songsModel.addRow(new Object[]{song.id, song.title, song.artist, song.durationMinutes, song.votes});
-        }
-        updateStatus();
-    }
-
     private void updateButtonState() {
         boolean songSelected = songsTable.getSelectedRowCount() > 0;
-        deleteButton.setEnabled(songSelected && user.role == Role.ADMIN);
-        voteButton.setEnabled(songSelected && user.role == Role.USER && !user.voted && !dataStore.votingClosed);
-        addButton.setEnabled(user.role == Role.ADMIN);
+        deleteButton.setEnabled(songSelected && user.role == Role.ADMIN && importWorker == null);
+        voteButton.setEnabled(songSelected && user.role == Role.USER && !event.hasVoted(user) && !event.isVotingClosed());
+        addButton.setEnabled(user.role == Role.ADMIN && importWorker == null);
+        importSongsButton.setEnabled(importWorker == null);
+        importUsersButton.setEnabled(importWorker == null);
         titleField.setEnabled(user.role == Role.ADMIN);
         artistField.setEnabled(user.role == Role.ADMIN);
         durationField.setEnabled(user.role == Role.ADMIN);
+        boolean finalizing = finalizeWorker != null || finalizeAllWorker != null;
+        closeVotingButton.setEnabled(!finalizing);
+        finalizeAllButton.setEnabled(!finalizing);
+        cancelFinalizeButton.setEnabled(finalizing);
+        eventBox.setEnabled(!finalizing && importWorker == null);
+        newEventButton.setEnabled(!finalizing && importWorker == null);
     }
 
     private void addSong() {
-        String title = titleField.getText().trim();
-        String artist = artistField.getText().trim();
-        String durationText = durationField.getText().trim();
-
-        if (title.isBlank() || artist.isBlank() || durationText.isBlank()) {
-            JOptionPane.showMessageDialog(this, "Заповніть назву, виконавця та тривалість.", "Помилка", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-
-        int duration;
+        Song song;
         try {
-            duration = Integer.parseInt(durationText);
-            if (duration <= 0) {
-                throw new NumberFormatException("<=0");
-            }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Тривалість має бути додатним числом.", "Помилка", JOptionPane.WARNING_MESSAGE);
+            song = Song.parse(titleField.getText(), artistField.getText(), durationField.getText());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Помилка", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        dataStore.songs.add(new Song(title, artist, duration));
+        long started = System.nanoTime();
+        event.addSong(song);
         titleField.setText("");
         artistField.setText("");
         durationField.setText("");
-        refreshSongs();
+        Metrics.UI_ADD_SONG.record(System.nanoTime() - started);
     }
 
     private void deleteSong() {
@@ -389,42 +2195,117 @@ class MainFrame extends JFrame {
         if (selected < 0) {
             return;
         }
-        int songId = (int) songsModel.getValueAt(selected, 0);
-        dataStore.songs.removeIf(song -> song.id == songId);
-        dataStore.votes.removeIf(v -> v.songId == songId);
-        refreshSongs();
+        long started = System.nanoTime();
+        int row = songsTable.convertRowIndexToModel(selected);
+        event.deleteSong(songsModel.songAt(row).id);
+        Metrics.UI_DELETE_SONG.record(System.nanoTime() - started);
     }
 
     private void voteForSongs() {
-        if (user.voted) {
+        if (event.hasVoted(user)) {
             JOptionPane.showMessageDialog(this, "Ви вже голосували.", "Попередження", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        if (dataStore.votingClosed) {
+        if (event.isVotingClosed()) {
             JOptionPane.showMessageDialog(this, "Голосування вже закрито.", "Попередження", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
         int[] selectedRows = songsTable.getSelectedRows();
         int countSelected = selectedRows.length;
-        if (countSelected < 1 || countSelected > dataStore.maxVoteLimit) {
+        int limit = event.maxVoteLimit();
+        if (countSelected < 1 || countSelected > limit) {
             JOptionPane.showMessageDialog(
                     this,
-                    "Потрібно обрати від 1 до " + dataStore.maxVoteLimit + " пісень.\nОбрано: " + countSelected,
+                    "Потрібно обрати від 1 до " + limit + " пісень.\nОбрано: " + countSelected,
                     "Перевищення ліміту",
                     JOptionPane.ERROR_MESSAGE
             );
             return;
         }
 
-        for (int row : selectedRows) {
-            int songId = (int) songsModel.getValueAt(row, 0);
-            dataStore.votes.add(new Vote(user.id, songId));
+        long started = System.nanoTime();
+        int[] songIds = new int[countSelected];
+        for (int i = 0; i < countSelected; i++) {
+            songIds[i] = songsModel.songAt(songsTable.convertRowIndexToModel(selectedRows[i])).id;
+        }
+        BallotResult result = event.castBallot(user, songIds);
+        updateButtonState();
+        Metrics.UI_VOTE.record(System.nanoTime() - started);
+        switch (result) {
+            case ACCEPTED:
+                JOptionPane.showMessageDialog(this, "Ваш голос збережено.");
+                break;
+            case ALREADY_VOTED:
+                JOptionPane.showMessageDialog(this, "Ви вже голосували.", "Попередження", JOptionPane.WARNING_MESSAGE);
+                break;
+            case VOTING_CLOSED:
+                JOptionPane.showMessageDialog(this, "Голосування вже закрито.", "Попередження", JOptionPane.WARNING_MESSAGE);
+                break;
+            default:
+                JOptionPane.showMessageDialog(this, "Обрані пісні недоступні. Оновіть вибір.", "Помилка", JOptionPane.ERROR_MESSAGE);
+                break;
+        }
+    }
+
+    private void importCsv(boolean songs) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(songs ? "CSV: назва, виконавець, тривалість" : "CSV: логін, пароль");
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV", "csv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
-        user.voted = true;
-        refreshSongs();
+        importWorker = new ImportWorker(chooser.getSelectedFile().toPath(), songs, event);
         updateButtonState();
-        JOptionPane.showMessageDialog(this, "Ваш голос збережено.");
+        importWorker.execute();
+    }
+
+    private final class ImportWorker extends SwingWorker<CsvImporter.Report, Integer> {
+        private final Path file;
+        private final boolean songs;
+        private final ConcertEvent target;
+        private int imported;
+
+        ImportWorker(Path file, boolean songs, ConcertEvent target) {
+            this.file = file;
+            this.songs = songs;
+            this.target = target;
+        }
+
+        @Override
+        protected CsvImporter.Report doInBackground() throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                return songs
+                        ? CsvImporter.importSongs(reader, target, imported -> publish(imported))
+                        : CsvImporter.importUsers(reader, dataStore, imported -> publish(imported));
+            }
+        }
+
+        @Override
+        protected void process(List<Integer> counts) {
+            imported = counts.get(counts.size() - 1);
+            if (songs) {
+                refreshView();
+            }
+            updateStatus(songsModel.view());
+        }
+
+        @Override
+        protected void done() {
+            importWorker = null;
+            updateButtonState();
+            try {
+                CsvImporter.Report report = get();
+                JTextArea summary = new JTextArea(report.summary(), 12, 60);
+                summary.setEditable(false);
+                JOptionPane.showMessageDialog(MainFrame.this, new JScrollPane(summary), "Імпорт " + file.getFileName(),
+                        report.rejected == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                JOptionPane.showMessageDialog(MainFrame.this, "Не вдалося прочитати файл: " + ex.getCause().getMessage(), "Помилка", JOptionPane.ERROR_MESSAGE);
+            }
+        }
     }
 
     private void saveLimit() {
@@ -434,204 +2315,619 @@ class MainFrame extends JFrame {
             if (newLimit <= 0) {
                 throw new NumberFormatException("<=0");
             }
-            dataStore.maxVoteLimit = newLimit;
+            event.setMaxVoteLimit(newLimit);
+            votingHint.setText(votingHintText());
             JOptionPane.showMessageDialog(this, "Ліміт голосів оновлено: " + newLimit);
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Введіть коректний додатний ліміт.", "Помилка", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    private void finalizeConcert() {
-        int maxMinutes;
+    /** Тривалість концерту з поля форми; 0, якщо введено некоректне значення (користувача вже попереджено). */
+    private int concertMinutes() {
         try {
-            maxMinutes = Integer.parseInt(concertDurationField.getText().trim());
+            int maxMinutes = Integer.parseInt(concertDurationField.getText().trim());
             if (maxMinutes <= 0) {
                 throw new NumberFormatException("<=0");
             }
+            return maxMinutes;
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Некоректна тривалість концерту.", "Помилка", JOptionPane.ERROR_MESSAGE);
+            return 0;
+        }
+    }
+
+    private void finalizeConcert() {
+        int maxMinutes = concertMinutes();
+        if (maxMinutes == 0 || finalizeWorker != null || finalizeAllWorker != null) {
+            return;
+        }
+        EventView snapshot = event.closeVoting();
+        String name = "concert_program_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
+        ProgramSelector plan = planView == snapshot ? programPlan : null;
+        finalizeWorker = new FinalizeWorker(event, snapshot, maxMinutes, plan, Path.of(name));
+        finalizeWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                finalizeProgress.setValue((Integer) e.getNewValue());
+            }
+        });
+        finalizeProgress.setValue(0);
+        outputArea.setText("Формування програми концерту...");
+        updateButtonState();
+        finalizeWorker.execute();
+    }
+
+    private void cancelFinalize() {
+        if (finalizeWorker != null) {
+            finalizeWorker.cancel(true);
+        }
+        if (finalizeAllWorker != null) {
+            finalizeAllWorker.cancel(true);
+        }
+    }
+
+    private void finalizeAllClosed() {
+        int maxMinutes = concertMinutes();
+        if (maxMinutes == 0 || finalizeWorker != null || finalizeAllWorker != null) {
             return;
         }
+        finalizeAllWorker = new FinalizeAllWorker(maxMinutes);
+        finalizeProgress.setValue(0);
+        outputArea.setText("Формування програм усіх закритих подій...");
+        updateButtonState();
+        finalizeAllWorker.execute();
+    }
 
-        dataStore.votingClosed = true;
-        dataStore.recalculateAllVotes();
+    private final class FinalizeAllWorker extends SwingWorker<List<EventFinalizer.Result>, Void> {
+        private final int maxMinutes;
 
-        List<Song> sorted = dataStore.songs.stream()
-                .sorted(Comparator.comparingInt((Song s) -> s.votes).reversed()
-                        .thenComparing(s -> s.title.toLowerCase(Locale.ROOT)))
-                .collect(Collectors.toList());
+        FinalizeAllWorker(int maxMinutes) {
+            this.maxMinutes = maxMinutes;
+        }
 
-        List<Song> concertSongs = new ArrayList<>();
-        int total = 0;
-        for (Song song : sorted) {
-            if (total + song.durationMinutes <= maxMinutes) {
-                concertSongs.add(song);
-                total += song.durationMinutes;
+        @Override
+        protected List<EventFinalizer.Result> doInBackground() throws InterruptedException {
+            return EventFinalizer.finalizeClosed(dataStore.events(), dataStore.reports(), maxMinutes, Path.of(""),
+                    Runtime.getRuntime().availableProcessors());
+        }
+
+        @Override
+        protected void done() {
+            finalizeAllWorker = null;
+            try {
+                List<EventFinalizer.Result> results = get();
+                StringBuilder sb = new StringBuilder();
+                int saved = 0;
+                for (EventFinalizer.Result result : results) {
+                    if (result.error != null) {
+                        sb.append("Подія: ").append(result.event.name).append("\nНе вдалося сформувати: ")
+                                .append(result.error.getMessage()).append("\n\n");
+                    } else {
+                        sb.append(result.report).append("PDF: ").append(result.pdf.toAbsolutePath()).append("\n\n");
+                        saved++;
+                    }
+                }
+                finalizeProgress.setValue(100);
+                outputArea.setText(results.isEmpty() ? "Немає подій із закритим голосуванням." : sb.toString());
+                JOptionPane.showMessageDialog(MainFrame.this, "Сформовано програм: " + saved + " з " + results.size());
+            } catch (CancellationException ex) {
+                finalizeProgress.setValue(0);
+                outputArea.setText("Формування програм скасовано.");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                JOptionPane.showMessageDialog(MainFrame.this, "Не вдалося сформувати програми: " + ex.getCause(), "Помилка", JOptionPane.ERROR_MESSAGE);
             }
+            updateButtonState();
         }
+    }
 
-        String report = buildConcertReport(concertSongs, maxMinutes, total);
-        outputArea.setText(report);
+    private final class FinalizeWorker extends SwingWorker<Path, String> {
+        private final ConcertEvent target;
+        private final EventView snapshot;
+        private final int maxMinutes;
+        private final Path pdfPath;
+        private final long started = System.nanoTime();
+        private volatile ProgramSelector plan;
+
+        FinalizeWorker(ConcertEvent target, EventView snapshot, int maxMinutes, ProgramSelector plan, Path pdfPath) {
+            this.target = target;
+            this.snapshot = snapshot;
+            this.maxMinutes = maxMinutes;
+            this.plan = plan;
+            this.pdfPath = pdfPath;
+        }
 
-        try {
-            String name = "concert_program_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-            Path pdfPath = Path.of(name);
-            SimplePdfWriter.writePdf(pdfPath, report);
-            JOptionPane.showMessageDialog(this, "Голосування закрито. Звіт збережено: " + pdfPath.toAbsolutePath());
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(this, "Не вдалося зберегти PDF: " + ex.getMessage(), "Помилка", JOptionPane.ERROR_MESSAGE);
+        @Override
+        protected Path doInBackground() throws IOException {
+            ReportCache.Entry entry = dataStore.reports().lookup(target, snapshot, maxMinutes);
+            if (entry == null) {
+                VoteAudit.Report audit = target.audit();
+                if (!audit.clean()) {
+                    publish(audit.summary());
+                    throw new IllegalStateException("підрахунок голосів не пройшов аудит");
+                }
+                if (plan == null || plan.maxMinutes() < maxMinutes) {
+                    plan = ProgramSelector.solve(snapshot, maxMinutes, ProgramSelector.DEFAULT_MEMORY_BUDGET,
+                            percent -> setProgress(percent * 80 / 100));
+                }
+                entry = dataStore.reports().store(target, snapshot, maxMinutes, plan.select(maxMinutes));
+            }
+            publish(entry.report);
+            setProgress(85);
+
+            try {
+                entry.save(pdfPath);
+            } catch (IOException ex) {
+                Files.deleteIfExists(pdfPath);
+                throw ex;
+            }
+            if (isCancelled()) {
+                Files.deleteIfExists(pdfPath);
+            }
+            setProgress(100);
+            return pdfPath;
         }
 
-        updateButtonState();
+        @Override
+        protected void process(List<String> reports) {
+            if (!isCancelled()) {
+                outputArea.setText(reports.get(reports.size() - 1));
+            }
+        }
+
+        @Override
+        protected void done() {
+            Metrics.UI_FINALIZE.record(System.nanoTime() - started);
+            finalizeWorker = null;
+            if (plan != null) {
+                programPlan = plan;
+                planView = snapshot;
+            }
+            try {
+                Path saved = get();
+                JOptionPane.showMessageDialog(MainFrame.this, "Голосування закрито. Звіт збережено: " + saved.toAbsolutePath());
+            } catch (CancellationException ex) {
+                finalizeProgress.setValue(0);
+                outputArea.setText("Формування програми концерту скасовано.");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    JOptionPane.showMessageDialog(MainFrame.this, "Не вдалося зберегти PDF: " + cause.getMessage(), "Помилка", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(MainFrame.this, "Не вдалося сформувати концерт: " + cause, "Помилка", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            updateButtonState();
+        }
+    }
+
+    private void updateStatus(EventView view) {
+        String status = "Роль: " + (user.role == Role.ADMIN ? "Адміністратор" : "Слухач")
+                + " | Подія: " + event.name
+                + " | Ліміт N=" + view.maxVoteLimit
+                + " | К-сть пісень=" + view.songs.size()
+                + " | Голосування: " + (view.votingClosed ? "закрито" : "відкрите");
+        if (importWorker != null && importWorker.imported > 0) {
+            status += " | Імпортовано: " + importWorker.imported;
+        }
+        statusLabel.setText(status);
+    }
+}
+
+class ConcertProgram {
+    final List<Song> songs;
+    final int totalMinutes;
+    final long totalVotes;
+
+    /** Голоси songs.get(i), за якими їх обрано. */
+    final int[] votes;
+
+    ConcertProgram(List<Song> songs, int[] votes, int totalMinutes, long totalVotes) {
+        this.songs = songs;
+        this.votes = votes;
+        this.totalMinutes = totalMinutes;
+        this.totalVotes = totalVotes;
     }
 
-    private String buildConcertReport(List<Song> songs, int limit, int total) {
+    String report(int limit) {
         StringBuilder sb = new StringBuilder();
         sb.append("ПРОГРАМА КОНЦЕРТУ\n");
         sb.append("==============================\n");
         sb.append("Ліміт тривалості: ").append(limit).append(" хв\n");
-        sb.append("Фактична тривалість: ").append(total).append(" хв\n\n");
+        sb.append("Фактична тривалість: ").append(totalMinutes).append(" хв\n\n");
 
         if (songs.isEmpty()) {
             sb.append("Немає пісень для програми.\n");
             return sb.toString();
         }
 
-        int i = 1;
-        for (Song s : songs) {
+        for (int i = 0; i < songs.size(); i++) {
+            Song s = songs.get(i);
             sb.append(String.format(Locale.ROOT, "%d) %s — %s (%d хв, голосів: %d)%n",
-                    i++, s.title, s.artist, s.durationMinutes, s.votes));
+                    i + 1, s.title, s.artist, s.durationMinutes, votes[i]));
         }
         return sb.toString();
     }
+}
 
-    private void updateStatus() {
-        String status = "Роль: " + (user.role == Role.ADMIN ? "Адміністратор" : "Слухач")
-                + " | Ліміт N=" + dataStore.maxVoteLimit
-                + " | К-сть пісень=" + dataStore.songs.size()
-                + " | Голосування: " + (dataStore.votingClosed ? "закрито" : "відкрите");
-        statusLabel.setText(status);
+/** LRU готових програм за (подія, версія зрізу, тривалість); версія росте з кожною зміною, тож записи не застарівають. */
+final class ReportCache {
+    static final int DEFAULT_CAPACITY = 32;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    ReportCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1");
+        }
+        this.capacity = capacity;
+    }
+
+    synchronized Entry lookup(ConcertEvent event, EventView view, int maxMinutes) {
+        return entries.get(new Key(event, view.version, maxMinutes));
+    }
+
+    Entry store(ConcertEvent event, EventView view, int maxMinutes, ConcertProgram program) throws IOException {
+        long started = System.nanoTime();
+        String report = "Подія: " + event.name + "\n" + program.report(maxMinutes);
+        Entry entry = new Entry(program, report, SimplePdfWriter.render(report));
+        synchronized (this) {
+            entries.put(new Key(event, view.version, maxMinutes), entry);
+            if (entries.size() > capacity) {
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        Metrics.REPORT_BUILD.record(System.nanoTime() - started);
+        return entry;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    static final class Entry {
+        final ConcertProgram program;
+        final String report;
+        private final byte[] pdf;
+
+        Entry(ConcertProgram program, String report, byte[] pdf) {
+            this.program = program;
+            this.report = report;
+            this.pdf = pdf;
+        }
+
+        void save(Path path) throws IOException {
+            Files.write(path, pdf);
+        }
+    }
+
+    // Події ніколи не замінюються іншим об'єктом з тим самим id, тож достатньо порівняння посилань.
+    private static final class Key {
+        final ConcertEvent event;
+        final long version;
+        final int maxMinutes;
+
+        Key(ConcertEvent event, long version, int maxMinutes) {
+            this.event = event;
+            this.version = version;
+            this.maxMinutes = maxMinutes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return event == key.event && version == key.version && maxMinutes == key.maxMinutes;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(event) * 31 + Long.hashCode(version)) * 31 + maxMinutes;
+        }
     }
 }
 
-class SimplePdfWriter {
-    private SimplePdfWriter() {}
-
-    public static void writePdf(Path path, String content) throws IOException {
-        List<String> lines = content.lines().collect(Collectors.toList());
-        String stream = buildTextStream(lines);
-
-        String obj1 = "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n";
-        String obj2 = "2 0 obj\n<< /Type /Pages /Count 1 /Kids [3 0 R] >>\nendobj\n";
-        String obj3 = "3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] /Resources << /Font << /F1 4 0 R >> >> /Contents 5 0 R >>\nendobj\n";
-        String obj4 = "4 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n";
-
-        byte[] streamBytes = stream.getBytes(StandardCharsets.ISO_8859_1);
-        String obj5Header = "5 0 obj\n<< /Length " + streamBytes.length + " >>\nstream\n";
-        String obj5Footer = "\nendstream\nendobj\n";
-
-        String header = "%PDF-1.4\n";
-
-        List<byte[]> chunks = new ArrayList<>();
-        chunks.add(header.getBytes(StandardCharsets.ISO_8859_1));
-
-        int offset1 = size(chunks);
-        chunks.add(obj1.getBytes(StandardCharsets.ISO_8859_1));
-        int offset2 = size(chunks);
-        chunks.add(obj2.getBytes(StandardCharsets.ISO_8859_1));
-        int offset3 = size(chunks);
-        chunks.add(obj3.getBytes(StandardCharsets.ISO_8859_1));
-        int offset4 = size(chunks);
-        chunks.add(obj4.getBytes(StandardCharsets.ISO_8859_1));
-        int offset5 = size(chunks);
-        chunks.add(obj5Header.getBytes(StandardCharsets.ISO_8859_1));
-        chunks.add(streamBytes);
-        chunks.add(obj5Footer.getBytes(StandardCharsets.ISO_8859_1));
-
-        int xrefOffset = size(chunks);
-        String xref = "xref\n0 6\n"
-                + "0000000000 65535 f \n"
-                + formatOffset(offset1)
-                + formatOffset(offset2)
-                + formatOffset(offset3)
-                + formatOffset(offset4)
-                + formatOffset(offset5)
-                + "trailer\n<< /Size 6 /Root 1 0 R >>\nstartxref\n"
-                + xrefOffset + "\n%%EOF\n";
-        chunks.add(xref.getBytes(StandardCharsets.ISO_8859_1));
-
-        int totalSize = size(chunks);
-        byte[] pdfBytes = new byte[totalSize];
-        int pos = 0;
-        for (byte[] chunk : chunks) {
-            System.arraycopy(chunk, 0, pdfBytes, pos, chunk.length);
-            pos += chunk.length;
-        }
-
-        Files.write(path, pdfBytes);
-    }
-
-    private static String buildTextStream(List<String> lines) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("BT\n/F1 12 Tf\n50 790 Td\n14 TL\n");
-        for (String line : lines) {
-            String safe = escapePdfText(transliterate(line));
-            sb.append("(").append(safe).append(") Tj\nT*\n");
+/** Пул обмежений, бо кожен ProgramSelector може зайняти до DEFAULT_MEMORY_BUDGET пам'яті. */
+final class EventFinalizer {
+    private EventFinalizer() {}
+
+    static List<Result> finalizeClosed(Collection<ConcertEvent> events, ReportCache cache, int maxMinutes,
+                                       Path pdfDir, int threads) throws InterruptedException {
+        List<ConcertEvent> closed = new ArrayList<>();
+        for (ConcertEvent event : events) {
+            if (event.isVotingClosed()) {
+                closed.add(event);
+            }
         }
-        sb.append("ET");
-        return sb.toString();
+        if (closed.isEmpty()) {
+            return List.of();
+        }
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, closed.size()), r -> {
+            Thread thread = new Thread(r, "event-finalizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<Result>> tasks = new ArrayList<>(closed.size());
+            for (ConcertEvent event : closed) {
+                tasks.add(() -> finalizeEvent(event, cache, maxMinutes, pdfDir, stamp));
+            }
+            List<Result> results = new ArrayList<>(closed.size());
+            for (Future<Result> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Не вдалося сформувати програми подій", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Result finalizeEvent(ConcertEvent event, ReportCache cache, int maxMinutes, Path pdfDir,
+                                        String stamp) {
+        Path pdf = pdfDir == null ? null : pdfDir.resolve("concert_program_" + event.id + "_" + stamp + ".pdf");
+        try {
+            EventView snapshot = event.closeVoting();
+            ReportCache.Entry entry = cache.lookup(event, snapshot, maxMinutes);
+            if (entry == null) {
+                VoteAudit.Report audit = event.audit();
+                if (!audit.clean()) {
+                    throw new IllegalStateException(audit.summary());
+                }
+                ConcertProgram program = ProgramSelector.solve(snapshot, maxMinutes).select(maxMinutes);
+                entry = cache.store(event, snapshot, maxMinutes, program);
+            }
+            if (pdf != null) {
+                entry.save(pdf);
+            }
+            return new Result(event, entry.program, entry.report, pdf, null);
+        } catch (IOException | RuntimeException ex) {
+            if (pdf != null) {
+                try {
+                    Files.deleteIfExists(pdf);
+                } catch (IOException ignored) {
+                    // залишок недописаного файлу не заважає іншим подіям
+                }
+            }
+            return new Result(event, null, null, null, ex);
+        }
+    }
+
+    static final class Result {
+        final ConcertEvent event;
+        final ConcertProgram program;
+        final String report;
+        final Path pdf;
+        final Exception error;
+
+        Result(ConcertEvent event, ConcertProgram program, String report, Path pdf, Exception error) {
+            this.event = event;
+            this.program = program;
+            this.report = report;
+            this.pdf = pdf;
+            this.error = error;
+        }
+    }
+}
+
+/** 0/1-рюкзак за голосами; понад бюджет пам'яті біти рішень зберігаються лише на межах блоків. */
+final class ProgramSelector {
+    static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private final Song[] items;
+    private final int[] votes;
+    private final int[] durations;
+    private final int maxMinutes;
+    private final long[] best;
+
+    private final long[] takeBits;
+
+    private final int blockSize;
+    private final long[][] checkpoints;
+
+    private ProgramSelector(Song[] items, int[] votes, int[] durations, int maxMinutes, long memoryBudget,
+                            IntConsumer progress) {
+        this.items = items;
+        this.votes = votes;
+        this.durations = durations;
+        this.maxMinutes = maxMinutes;
+        this.best = new long[maxMinutes + 1];
+
+        int n = items.length;
+        int width = maxMinutes + 1;
+        long fullBytes = ((long) n * width + 63) / 64 * 8;
+        if (fullBytes <= memoryBudget) {
+            takeBits = new long[(int) (((long) n * width + 63) / 64)];
+            blockSize = n;
+            checkpoints = null;
+            for (int i = n - 1; i >= 0; i--) {
+                relax(i, best, takeBits, (long) i * width);
+                reportProgress(n - i, n, progress);
+            }
+        } else {
+            takeBits = null;
+            blockSize = Math.max(1, (int) Math.sqrt(64.0 * n));
+            checkpoints = new long[(n + blockSize - 1) / blockSize][];
+            for (int i = n - 1; i >= 0; i--) {
+                if ((i + 1) % blockSize == 0 || i == n - 1) {
+                    checkpoints[i / blockSize] = best.clone();
+                }
+                relax(i, best, null, 0);
+                reportProgress(n - i, n, progress);
+            }
+        }
+    }
+
+    static ProgramSelector solve(Collection<Song> songs, int maxMinutes) {
+        return solve(songs, maxMinutes, DEFAULT_MEMORY_BUDGET);
+    }
+
+    static ProgramSelector solve(Collection<Song> songs, int maxMinutes, long memoryBudget) {
+        return solve(songs, maxMinutes, memoryBudget, percent -> { });
+    }
+
+    static ProgramSelector solve(Collection<Song> songs, int maxMinutes, long memoryBudget, IntConsumer progress) {
+        Ranked[] ranked = new Ranked[songs.size()];
+        int n = 0;
+        for (Song song : songs) {
+            if (n == ranked.length) {
+                break;
+            }
+            ranked[n++] = new Ranked(song, song.votes);
+        }
+        return solve(ranked, n, maxMinutes, memoryBudget, progress);
+    }
+
+    /** Підбір за голосами зрізу події, а не за живими лічильниками пісень. */
+    static ProgramSelector solve(EventView view, int maxMinutes) {
+        return solve(view, maxMinutes, DEFAULT_MEMORY_BUDGET, percent -> { });
+    }
+
+    static ProgramSelector solve(EventView view, int maxMinutes, long memoryBudget, IntConsumer progress) {
+        Ranked[] ranked = new Ranked[view.songs.size()];
+        for (int i = 0; i < ranked.length; i++) {
+            ranked[i] = new Ranked(view.songs.get(i), view.votes[i]);
+        }
+        return solve(ranked, ranked.length, maxMinutes, memoryBudget, progress);
+    }
+
+    private static ProgramSelector solve(Ranked[] ranked, int n, int maxMinutes, long memoryBudget,
+                                         IntConsumer progress) {
+        if (maxMinutes < 0) {
+            throw new IllegalArgumentException("maxMinutes < 0");
+        }
+        Arrays.sort(ranked, 0, n);
+
+        Song[] items = new Song[n];
+        int[] votes = new int[n];
+        int[] durations = new int[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = ranked[i].song;
+            votes[i] = ranked[i].votes;
+            durations[i] = ranked[i].song.durationMinutes;
+        }
+        return new ProgramSelector(items, votes, durations, maxMinutes, memoryBudget, progress);
     }
 
-    private static String transliterate(String input) {
-        String out = input;
-        out = out.replace("А", "A").replace("а", "a");
-        out = out.replace("Б", "B").replace("б", "b");
-        out = out.replace("В", "V").replace("в", "v");
-        out = out.replace("Г", "H").replace("г", "h");
-        out = out.replace("Ґ", "G").replace("ґ", "g");
-        out = out.replace("Д", "D").replace("д", "d");
-        out = out.replace("Е", "E").replace("е", "e");
-        out = out.replace("Є", "Ye").replace("є", "ie");
-        out = out.replace("Ж", "Zh").replace("ж", "zh");
-        out = out.replace("З", "Z").replace("з", "z");
-        out = out.replace("И", "Y").replace("и", "y");
-        out = out.replace("І", "I").replace("і", "i");
-        out = out.replace("Ї", "Yi").replace("ї", "i");
-        out = out.replace("Й", "Y").replace("й", "i");
-        out = out.replace("К", "K").replace("к", "k");
-        out = out.replace("Л", "L").replace("л", "l");
-        out = out.replace("М", "M").replace("м", "m");
-        out = out.replace("Н", "N").replace("н", "n");
-        out = out.replace("О", "O").replace("о", "o");
-        out = out.replace("П", "P").replace("п", "p");
-        out = out.replace("Р", "R").replace("р", "r");
-        out = out.replace("С", "S").replace("с", "s");
-        out = out.replace("Т", "T").replace("т", "t");
-        out = out.replace("У", "U").replace("у", "u");
-        out = out.replace("Ф", "F").replace("ф", "f");
-        out = out.replace("Х", "Kh").replace("х", "kh");
-        out = out.replace("Ц", "Ts").replace("ц", "ts");
-        out = out.replace("Ч", "Ch").replace("ч", "ch");
-        out = out.replace("Ш", "Sh").replace("ш", "sh");
-        out = out.replace("Щ", "Shch").replace("щ", "shch");
-        out = out.replace("Ю", "Yu").replace("ю", "iu");
-        out = out.replace("Я", "Ya").replace("я", "ia");
-        out = out.replace("Ь", "").replace("ь", "");
-        out = out.replace("'", "");
-        return out;
-    }
-
-    private static String escapePdfText(String txt) {
-        return txt.replace("\\", "\\\\")
-                .replace("(", "\\(")
-                .replace(")", "\\)");
-    }
-
-    private static String formatOffset(int offset) {
-        return String.format(Locale.ROOT, "%010d 00000 n \n", offset);
-    }
-
-    private static int size(List<byte[]> chunks) {
-        return chunks.stream().filter(Objects::nonNull).mapToInt(a -> a.length).sum();
+    int maxMinutes() {
+        return maxMinutes;
+    }
+
+    boolean boundedMemory() {
+        return takeBits == null;
+    }
+
+    long bestVotes(int minutes) {
+        return best[checkLimit(minutes)];
+    }
+
+    ConcertProgram select(int minutes) {
+        int w = checkLimit(minutes);
+        int width = maxMinutes + 1;
+        List<Song> chosen = new ArrayList<>();
+        int[] chosenVotes = new int[items.length];
+        int total = 0;
+        long totalVotes = 0;
+
+        long[] bits = takeBits;
+        long[] row = null;
+        for (int i = 0; i < items.length; i++) {
+            long bitIndex;
+            if (takeBits != null) {
+                bitIndex = (long) i * width + w;
+            } else {
+                int block = i / blockSize;
+                int start = block * blockSize;
+                if (i == start) {
+                    int end = Math.min(items.length, start + blockSize);
+                    if (bits == null) {
+                        bits = new long[(int) (((long) blockSize * width + 63) / 64)];
+                        row = new long[width];
+                    } else {
+                        Arrays.fill(bits, 0L);
+                    }
+                    rebuildBlock(start, end, row, bits);
+                }
+                bitIndex = (long) (i - start) * width + w;
+            }
+            if ((bits[(int) (bitIndex >>> 6)] & (1L << bitIndex)) != 0) {
+                chosenVotes[chosen.size()] = votes[i];
+                chosen.add(items[i]);
+                w -= durations[i];
+                total += durations[i];
+                totalVotes += votes[i];
+            }
+        }
+        return new ConcertProgram(chosen, Arrays.copyOf(chosenVotes, chosen.size()), total, totalVotes);
+    }
+
+    private void rebuildBlock(int start, int end, long[] row, long[] bits) {
+        int width = maxMinutes + 1;
+        if (end == items.length) {
+            Arrays.fill(row, 0L);
+        } else {
+            System.arraycopy(checkpoints[end / blockSize - 1], 0, row, 0, width);
+        }
+        for (int i = end - 1; i >= start; i--) {
+            relax(i, row, bits, (long) (i - start) * width);
+        }
+    }
+
+    private void relax(int i, long[] row, long[] bits, long bitBase) {
+        int d = durations[i];
+        long v = votes[i];
+        for (int w = maxMinutes; w >= d; w--) {
+            long candidate = row[w - d] + v;
+            if (candidate >= row[w]) {
+                row[w] = candidate;
+                if (bits != null) {
+                    long bitIndex = bitBase + w;
+                    bits[(int) (bitIndex >>> 6)] |= 1L << bitIndex;
+                }
+            }
+        }
+    }
+
+    private static void reportProgress(int done, int total, IntConsumer progress) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Підбір програми скасовано");
+        }
+        int percent = (int) ((long) done * 100 / total);
+        if (percent != (int) ((long) (done - 1) * 100 / total)) {
+            progress.accept(percent);
+        }
+    }
+
+    private int checkLimit(int minutes) {
+        if (minutes < 0 || minutes > maxMinutes) {
+            throw new IllegalArgumentException("Ліміт поза межами 0.." + maxMinutes + ": " + minutes);
+        }
+        return minutes;
+    }
+
+    private static final class Ranked implements Comparable<Ranked> {
+        final Song song;
+        final int votes;
+
+        Ranked(Song song, int votes) {
+            this.song = song;
+            this.votes = votes;
+        }
+
+        @Override
+        public int compareTo(Ranked other) {
+            int byVotes = Integer.compare(other.votes, votes);
+            return byVotes != 0 ? byVotes : song.title.compareToIgnoreCase(other.song.title);
+        }
     }
 }
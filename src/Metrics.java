@@ -0,0 +1,331 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/** Лог-лінійні кошики: до 16 нс точно, далі 8 на степінь двійки (похибка до 12,5%). */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_COUNT;
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_COUNT;
+
+    final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(index(nanos));
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    Stats stats() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        long max = maxNanos.get();
+        double mean = count == 0 ? 0 : totalNanos.sum() / (double) count;
+        return new Stats(count, mean, percentile(counts, count, max, 0.50), percentile(counts, count, max, 0.90),
+                percentile(counts, count, max, 0.99), percentile(counts, count, max, 0.999), max);
+    }
+
+    private static long percentile(long[] counts, long count, long max, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int index(long nanos) {
+        if (nanos < LINEAR) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int mantissa = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_COUNT + mantissa;
+    }
+
+    private static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+        int mantissa = (index - LINEAR) % SUB_COUNT;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((long) (SUB_COUNT + mantissa) << (exponent - SUB_BITS)) + width - 1;
+    }
+
+    static final class Stats {
+        final long count;
+        final double meanNanos;
+        final long p50Nanos;
+        final long p90Nanos;
+        final long p99Nanos;
+        final long p999Nanos;
+        final long maxNanos;
+
+        Stats(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+            this.maxNanos = maxNanos;
+        }
+    }
+}
+
+final class Metrics {
+    static final LatencyHistogram LOGIN = new LatencyHistogram("store.findUser");
+    static final LatencyHistogram REGISTER = new LatencyHistogram("store.registerUser");
+    static final LatencyHistogram BALLOT = new LatencyHistogram("store.castBallot");
+    static final LatencyHistogram ADD_SONG = new LatencyHistogram("store.addSong");
+    static final LatencyHistogram ADD_SONGS = new LatencyHistogram("store.addSongs");
+    static final LatencyHistogram REGISTER_USERS = new LatencyHistogram("store.registerUsers");
+    static final LatencyHistogram DELETE_SONG = new LatencyHistogram("store.deleteSong");
+    static final LatencyHistogram SET_LIMIT = new LatencyHistogram("store.setMaxVoteLimit");
+    static final LatencyHistogram CLOSE_VOTING = new LatencyHistogram("store.closeVoting");
+    static final LatencyHistogram RECALCULATE = new LatencyHistogram("store.recalculateAllVotes");
+    static final LatencyHistogram AUDIT = new LatencyHistogram("store.auditVotes");
+    static final LatencyHistogram JOURNAL_FLUSH = new LatencyHistogram("journal.flush");
+    static final LatencyHistogram SNAPSHOT = new LatencyHistogram("persistence.snapshot");
+    static final LatencyHistogram UI_ADD_SONG = new LatencyHistogram("ui.addSong");
+    static final LatencyHistogram UI_DELETE_SONG = new LatencyHistogram("ui.deleteSong");
+    static final LatencyHistogram UI_VOTE = new LatencyHistogram("ui.voteForSongs");
+    static final LatencyHistogram UI_REFRESH = new LatencyHistogram("ui.refreshSongs");
+    static final LatencyHistogram UI_LOGIN = new LatencyHistogram("ui.login");
+    static final LatencyHistogram UI_FINALIZE = new LatencyHistogram("ui.finalizeConcert");
+    static final LatencyHistogram PDF_WRITE = new LatencyHistogram("pdf.write");
+    static final LatencyHistogram REPORT_BUILD = new LatencyHistogram("report.build");
+
+    private static final List<LatencyHistogram> HISTOGRAMS = List.of(LOGIN, REGISTER, REGISTER_USERS, BALLOT, ADD_SONG,
+            ADD_SONGS, DELETE_SONG, SET_LIMIT, CLOSE_VOTING, RECALCULATE, AUDIT, JOURNAL_FLUSH, SNAPSHOT, UI_ADD_SONG,
+            UI_DELETE_SONG, UI_VOTE, UI_REFRESH, UI_LOGIN, UI_FINALIZE, PDF_WRITE, REPORT_BUILD);
+    private static final BallotResult[] RESULTS = BallotResult.values();
+    private static final LongAdder[] BALLOTS = new LongAdder[RESULTS.length];
+    private static final LongAdder VOTES = new LongAdder();
+    private static final long STARTED = System.nanoTime();
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    static {
+        for (int i = 0; i < BALLOTS.length; i++) {
+            BALLOTS[i] = new LongAdder();
+        }
+    }
+
+    private Metrics() {}
+
+    static void ballot(BallotResult result, int songCount, long nanos) {
+        BALLOT.record(nanos);
+        BALLOTS[result.ordinal()].increment();
+        if (result == BallotResult.ACCEPTED) {
+            VOTES.add(songCount);
+        }
+    }
+
+    static long ballots(BallotResult result) {
+        return BALLOTS[result.ordinal()].sum();
+    }
+
+    static long votes() {
+        return VOTES.sum();
+    }
+
+    static void register() {
+        if (!REGISTERED.compareAndSet(false, true)) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (LatencyHistogram histogram : HISTOGRAMS) {
+                Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+                attributes.put("Count", () -> histogram.stats().count);
+                attributes.put("RatePerSecond", () -> histogram.stats().count / uptimeSeconds());
+                attributes.put("MeanMicros", () -> histogram.stats().meanNanos / 1e3);
+                attributes.put("P50Micros", () -> histogram.stats().p50Nanos / 1e3);
+                attributes.put("P90Micros", () -> histogram.stats().p90Nanos / 1e3);
+                attributes.put("P99Micros", () -> histogram.stats().p99Nanos / 1e3);
+                attributes.put("P999Micros", () -> histogram.stats().p999Nanos / 1e3);
+                attributes.put("MaxMicros", () -> histogram.stats().maxNanos / 1e3);
+                server.registerMBean(new MetricsBean("Затримки " + histogram.name, attributes),
+                        new ObjectName("ua.concert:type=Latency,name=" + histogram.name));
+            }
+            Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+            for (BallotResult result : RESULTS) {
+                attributes.put(attributeName(result), () -> ballots(result));
+            }
+            attributes.put("VotesCast", Metrics::votes);
+            attributes.put("AcceptedPerSecond", () -> ballots(BallotResult.ACCEPTED) / uptimeSeconds());
+            server.registerMBean(new MetricsBean("Бюлетені за результатом", attributes),
+                    new ObjectName("ua.concert:type=Ballots"));
+        } catch (JMException ex) {
+            System.err.println("Не вдалося опублікувати метрики через JMX: " + ex.getMessage());
+        }
+    }
+
+    static void startDump(Path file, long periodSeconds) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] previous = new long[HISTOGRAMS.size() + 1];
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                Files.writeString(file, dump(previous, periodSeconds), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException ex) {
+                System.err.println("Не вдалося записати метрики: " + ex.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private static String dump(long[] previous, long periodSeconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append('\n');
+        for (int i = 0; i < HISTOGRAMS.size(); i++) {
+            LatencyHistogram histogram = HISTOGRAMS.get(i);
+            LatencyHistogram.Stats stats = histogram.stats();
+            long delta = stats.count - previous[i];
+            previous[i] = stats.count;
+            if (stats.count == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.ROOT,
+                    "  %-26s count=%d (+%d, %.1f/s) mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f us%n",
+                    histogram.name, stats.count, delta, delta / (double) periodSeconds, stats.meanNanos / 1e3,
+                    stats.p50Nanos / 1e3, stats.p90Nanos / 1e3, stats.p99Nanos / 1e3, stats.p999Nanos / 1e3,
+                    stats.maxNanos / 1e3));
+        }
+        long accepted = ballots(BallotResult.ACCEPTED);
+        long delta = accepted - previous[HISTOGRAMS.size()];
+        previous[HISTOGRAMS.size()] = accepted;
+        sb.append(String.format(Locale.ROOT, "  ballots accepted=%d (+%d, %.1f/s) votes=%d",
+                accepted, delta, delta / (double) periodSeconds, votes()));
+        for (BallotResult result : RESULTS) {
+            if (result != BallotResult.ACCEPTED) {
+                sb.append(' ').append(result.name().toLowerCase(Locale.ROOT)).append('=').append(ballots(result));
+            }
+        }
+        return sb.append("\n\n").toString();
+    }
+
+    private static double uptimeSeconds() {
+        return Math.max(1e-9, (System.nanoTime() - STARTED) / 1e9);
+    }
+
+    private static String attributeName(BallotResult result) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : result.name().split("_")) {
+            sb.append(part.charAt(0)).append(part.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return sb.toString();
+    }
+}
+
+// Стандартний MBean вимагав би публічного інтерфейсу, а всі класи тут пакетні.
+final class MetricsBean implements DynamicMBean {
+    private final Map<String, Supplier<Object>> attributes;
+    private final MBeanInfo info;
+
+    MetricsBean(String description, Map<String, Supplier<Object>> attributes) {
+        this.attributes = attributes;
+        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+        int i = 0;
+        for (Map.Entry<String, Supplier<Object>> attribute : attributes.entrySet()) {
+            String type = attribute.getValue().get().getClass().getName();
+            infos[i++] = new MBeanAttributeInfo(attribute.getKey(), type, attribute.getKey(), true, false, false);
+        }
+        this.info = new MBeanInfo(getClass().getName(), description, infos, null, null, null);
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<Object> supplier = attributes.get(attribute);
+        if (supplier == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return supplier.get();
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Атрибут лише для читання: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<Object> supplier = attributes.get(name);
+            if (supplier != null) {
+                list.add(new Attribute(name, supplier.get()));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+}
@@ -0,0 +1,801 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/** Підмножина гліфів будується з об'єднання всіх звітів і перебудовується лише для нових гліфів. */
+final class TrueTypeFont {
+    private static final Map<Path, TrueTypeFont> LOADED = new ConcurrentHashMap<>();
+    // Таблиці, потрібні CIDFontType2 з CIDToGIDMap /Identity; cmap і name переглядачі PDF не читають.
+    private static final String[] SUBSET_TABLES = {"cvt ", "fpgm", "glyf", "head", "hhea", "hmtx", "loca", "maxp", "prep"};
+    private static final int COMPOSITE_MORE = 0x20;
+
+    final String name;
+    /** Габарити, висота над і під базовою лінією — в тисячних частках кегля, як їх чекає PDF. */
+    final int[] bbox;
+    final int ascent;
+    final int descent;
+
+    private final byte[] data;
+    private final Map<String, int[]> tables = new HashMap<>();
+    private final int glyf;
+    private final int glyphCount;
+    private final int[] glyphStart;
+    private final int[] widths;
+    private final char[] glyphOfChar = new char[0x10000];
+    private final int missingGlyph;
+
+    private final BitSet subsetGlyphs = new BitSet();
+    private Subset subset;
+
+    private TrueTypeFont(Path file) throws IOException {
+        data = Files.readAllBytes(file);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        int version = data.length < 12 ? 0 : in.getInt(0);
+        if (version != 0x00010000 && version != 0x74727565) {
+            throw new IOException("Підтримуються лише TrueType-шрифти (.ttf): " + file);
+        }
+        int tableCount = in.getShort(4) & 0xFFFF;
+        for (int i = 0; i < tableCount; i++) {
+            int record = 12 + 16 * i;
+            String tag = new String(data, record, 4, StandardCharsets.ISO_8859_1);
+            tables.put(tag, new int[] {in.getInt(record + 8), in.getInt(record + 12)});
+        }
+        int head = table("head");
+        int hhea = table("hhea");
+        int hmtx = table("hmtx");
+        int loca = table("loca");
+        glyf = table("glyf");
+        glyphCount = in.getShort(table("maxp") + 4) & 0xFFFF;
+
+        int unitsPerEm = in.getShort(head + 18) & 0xFFFF;
+        bbox = new int[4];
+        for (int i = 0; i < 4; i++) {
+            bbox[i] = in.getShort(head + 36 + 2 * i) * 1000 / unitsPerEm;
+        }
+        ascent = in.getShort(hhea + 4) * 1000 / unitsPerEm;
+        descent = in.getShort(hhea + 6) * 1000 / unitsPerEm;
+
+        int metrics = in.getShort(hhea + 34) & 0xFFFF;
+        widths = new int[glyphCount];
+        for (int g = 0; g < glyphCount; g++) {
+            int advance = in.getShort(hmtx + 4 * Math.min(g, metrics - 1)) & 0xFFFF;
+            widths[g] = advance * 1000 / unitsPerEm;
+        }
+
+        boolean longOffsets = in.getShort(head + 50) != 0;
+        glyphStart = new int[glyphCount + 1];
+        for (int g = 0; g <= glyphCount; g++) {
+            glyphStart[g] = longOffsets ? in.getInt(loca + 4 * g) : (in.getShort(loca + 2 * g) & 0xFFFF) * 2;
+        }
+
+        readCmap(in, table("cmap"));
+        name = postScriptName(in, file);
+        missingGlyph = glyphOfChar['?'];
+    }
+
+    static TrueTypeFont load(Path file) throws IOException {
+        try {
+            return LOADED.computeIfAbsent(file.toAbsolutePath().normalize(), path -> {
+                try {
+                    return new TrueTypeFont(path);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /** Шрифт звітів: -Dconcert.pdfFont або перший знайдений системний; null — лише Helvetica. */
+    static TrueTypeFont system() {
+        return SystemFont.FONT;
+    }
+
+    private static final class SystemFont {
+        static final TrueTypeFont FONT = locate();
+
+        private static TrueTypeFont locate() {
+            String configured = System.getProperty("concert.pdfFont");
+            List<Path> candidates = configured != null ? List.of(Path.of(configured)) : List.of(
+                    Path.of("/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf"),
+                    Path.of("/usr/share/fonts/dejavu/DejaVuSans.ttf"),
+                    Path.of("/usr/share/fonts/TTF/DejaVuSans.ttf"),
+                    Path.of("/usr/share/fonts/truetype/liberation/LiberationSans-Regular.ttf"),
+                    Path.of(System.getenv().getOrDefault("WINDIR", "C:\\Windows"), "Fonts", "arial.ttf"),
+                    Path.of("/System/Library/Fonts/Supplemental/Arial.ttf"),
+                    Path.of("/Library/Fonts/Arial.ttf"));
+            for (Path candidate : candidates) {
+                if (!Files.isRegularFile(candidate)) {
+                    continue;
+                }
+                try {
+                    return load(candidate);
+                } catch (IOException | RuntimeException ex) {
+                    System.err.println("Шрифт для PDF недоступний: " + ex.getMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    int glyphCount() {
+        return glyphCount;
+    }
+
+    boolean hasGlyph(int codePoint) {
+        return codePoint < glyphOfChar.length && glyphOfChar[codePoint] != 0;
+    }
+
+    /** Гліф символу; для символів поза шрифтом і поза BMP — гліф '?'. */
+    int glyph(int codePoint) {
+        return hasGlyph(codePoint) ? glyphOfChar[codePoint] : missingGlyph;
+    }
+
+    int width(int glyph) {
+        return widths[glyph];
+    }
+
+    synchronized Subset subset(BitSet used) {
+        BitSet missing = (BitSet) used.clone();
+        missing.andNot(subsetGlyphs);
+        if (subset == null || !missing.isEmpty()) {
+            subsetGlyphs.or(used);
+            subset = buildSubset();
+        }
+        return subset;
+    }
+
+    private Subset buildSubset() {
+        BitSet glyphs = (BitSet) subsetGlyphs.clone();
+        glyphs.set(0);
+        addComponents(glyphs);
+
+        ByteArrayOutputStream glyfTable = new ByteArrayOutputStream();
+        ByteBuffer locaTable = ByteBuffer.allocate(4 * (glyphCount + 1));
+        for (int g = 0; g < glyphCount; g++) {
+            locaTable.putInt(glyfTable.size());
+            if (glyphs.get(g)) {
+                glyfTable.write(data, glyf + glyphStart[g], glyphStart[g + 1] - glyphStart[g]);
+                while (glyfTable.size() % 4 != 0) {
+                    glyfTable.write(0);
+                }
+            }
+        }
+        locaTable.putInt(glyfTable.size());
+
+        Map<String, byte[]> content = new TreeMap<>();
+        for (String tag : SUBSET_TABLES) {
+            int[] entry = tables.get(tag);
+            if (entry != null) {
+                content.put(tag, Arrays.copyOfRange(data, entry[0], entry[0] + entry[1]));
+            }
+        }
+        content.put("glyf", glyfTable.toByteArray());
+        content.put("loca", locaTable.array());
+        byte[] head = content.get("head");
+        ByteBuffer.wrap(head).putInt(8, 0).putShort(50, (short) 1);
+
+        int count = content.size();
+        int log2 = 31 - Integer.numberOfLeadingZeros(count);
+        int size = 12 + 16 * count;
+        for (byte[] bytes : content.values()) {
+            size += (bytes.length + 3) & ~3;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(0x00010000).putShort((short) count).putShort((short) (16 << log2))
+                .putShort((short) log2).putShort((short) (16 * count - (16 << log2)));
+        int offset = 12 + 16 * count;
+        int headOffset = 0;
+        for (Map.Entry<String, byte[]> table : content.entrySet()) {
+            byte[] bytes = table.getValue();
+            out.put(table.getKey().getBytes(StandardCharsets.ISO_8859_1)).putInt(checksum(bytes, 0, bytes.length))
+                    .putInt(offset).putInt(bytes.length);
+            if (table.getKey().equals("head")) {
+                headOffset = offset;
+            }
+            offset += (bytes.length + 3) & ~3;
+        }
+        for (byte[] bytes : content.values()) {
+            out.put(bytes);
+            out.position((out.position() + 3) & ~3);
+        }
+        byte[] font = out.array();
+        out.putInt(headOffset + 8, 0xB1B0AFBA - checksum(font, 0, font.length));
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(font);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(font.length / 2);
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return new Subset(subsetTag(glyphs), compressed.toByteArray(), font.length);
+    }
+
+    // Складені гліфи (наприклад, «й» = «и» + бреве) посилаються на інші гліфи, які теж мають потрапити в підмножину.
+    private void addComponents(BitSet glyphs) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        int[] pending = glyphs.stream().toArray();
+        int n = pending.length;
+        while (n > 0) {
+            int g = pending[--n];
+            int start = glyf + glyphStart[g];
+            if (glyphStart[g + 1] == glyphStart[g] || in.getShort(start) >= 0) {
+                continue;
+            }
+            int pos = start + 10;
+            int flags;
+            do {
+                flags = in.getShort(pos) & 0xFFFF;
+                int component = in.getShort(pos + 2) & 0xFFFF;
+                if (component < glyphCount && !glyphs.get(component)) {
+                    glyphs.set(component);
+                    if (n == pending.length) {
+                        pending = Arrays.copyOf(pending, n * 2 + 1);
+                    }
+                    pending[n++] = component;
+                }
+                pos += 4 + ((flags & 0x1) != 0 ? 4 : 2);
+                if ((flags & 0x8) != 0) {
+                    pos += 2;
+                } else if ((flags & 0x40) != 0) {
+                    pos += 4;
+                } else if ((flags & 0x80) != 0) {
+                    pos += 8;
+                }
+            } while ((flags & COMPOSITE_MORE) != 0);
+        }
+    }
+
+    // Префікс імені підмножини за PDF: шість великих літер, різні для різних наборів гліфів.
+    private static String subsetTag(BitSet glyphs) {
+        long hash = glyphs.hashCode() & 0xFFFFFFFFL;
+        char[] tag = new char[6];
+        for (int i = 0; i < tag.length; i++) {
+            tag[i] = (char) ('A' + hash % 26);
+            hash /= 26;
+        }
+        return new String(tag);
+    }
+
+    private static int checksum(byte[] bytes, int from, int to) {
+        int sum = 0;
+        for (int i = from; i < to; i += 4) {
+            int word = 0;
+            for (int j = 0; j < 4; j++) {
+                word = (word << 8) | (i + j < to ? bytes[i + j] & 0xFF : 0);
+            }
+            sum += word;
+        }
+        return sum;
+    }
+
+    private void readCmap(ByteBuffer in, int cmap) throws IOException {
+        int best = -1;
+        int bestRank = 0;
+        int count = in.getShort(cmap + 2) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int record = cmap + 4 + 8 * i;
+            int platform = in.getShort(record) & 0xFFFF;
+            int encoding = in.getShort(record + 2) & 0xFFFF;
+            int subtable = cmap + in.getInt(record + 4);
+            int format = in.getShort(subtable) & 0xFFFF;
+            int rank = format == 12 && (platform == 3 && encoding == 10 || platform == 0) ? 3
+                    : format == 4 && (platform == 3 && encoding == 1 || platform == 0) ? 2 : 0;
+            if (rank > bestRank) {
+                best = subtable;
+                bestRank = rank;
+            }
+        }
+        if (best < 0) {
+            throw new IOException("У шрифті немає Unicode-таблиці cmap");
+        }
+        if (bestRank == 3) {
+            int groups = in.getInt(best + 12);
+            for (int i = 0; i < groups; i++) {
+                int group = best + 16 + 12 * i;
+                long first = in.getInt(group) & 0xFFFFFFFFL;
+                long last = Math.min(in.getInt(group + 4) & 0xFFFFFFFFL, 0xFFFF);
+                int glyph = in.getInt(group + 8);
+                for (long c = first; c <= last; c++) {
+                    glyphOfChar[(int) c] = (char) (glyph + (c - first));
+                }
+            }
+            return;
+        }
+        int segments = (in.getShort(best + 6) & 0xFFFF) / 2;
+        int ends = best + 14;
+        int starts = ends + 2 * segments + 2;
+        int deltas = starts + 2 * segments;
+        int rangeOffsets = deltas + 2 * segments;
+        for (int s = 0; s < segments; s++) {
+            int first = in.getShort(starts + 2 * s) & 0xFFFF;
+            int last = in.getShort(ends + 2 * s) & 0xFFFF;
+            int delta = in.getShort(deltas + 2 * s);
+            int rangeOffset = in.getShort(rangeOffsets + 2 * s) & 0xFFFF;
+            for (int c = first; c <= last && c != 0xFFFF; c++) {
+                int glyph;
+                if (rangeOffset == 0) {
+                    glyph = (c + delta) & 0xFFFF;
+                } else {
+                    glyph = in.getShort(rangeOffsets + 2 * s + rangeOffset + 2 * (c - first)) & 0xFFFF;
+                    glyph = glyph == 0 ? 0 : (glyph + delta) & 0xFFFF;
+                }
+                glyphOfChar[c] = (char) (glyph < glyphCount ? glyph : 0);
+            }
+        }
+    }
+
+    // PostScript-ім'я (nameID 6) стає /BaseFont; без нього — ім'я файлу без розширення.
+    private String postScriptName(ByteBuffer in, Path file) {
+        String found = null;
+        int[] entry = tables.get("name");
+        if (entry != null) {
+            int table = entry[0];
+            int count = in.getShort(table + 2) & 0xFFFF;
+            int strings = table + (in.getShort(table + 4) & 0xFFFF);
+            for (int i = 0; i < count && found == null; i++) {
+                int record = table + 6 + 12 * i;
+                int platform = in.getShort(record) & 0xFFFF;
+                if ((in.getShort(record + 6) & 0xFFFF) != 6 || platform != 1 && platform != 3) {
+                    continue;
+                }
+                int length = in.getShort(record + 8) & 0xFFFF;
+                int offset = strings + (in.getShort(record + 10) & 0xFFFF);
+                found = new String(data, offset, length,
+                        platform == 3 ? StandardCharsets.UTF_16BE : StandardCharsets.ISO_8859_1);
+            }
+        }
+        if (found == null) {
+            found = file.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+        }
+        String sanitized = found.replaceAll("[^A-Za-z0-9+-]", "");
+        return sanitized.isEmpty() ? "Font" : sanitized;
+    }
+
+    private int table(String tag) throws IOException {
+        int[] entry = tables.get(tag);
+        if (entry == null) {
+            throw new IOException("У шрифті немає таблиці " + tag.trim());
+        }
+        return entry[0];
+    }
+
+    /** Стиснутий (FlateDecode) образ підмножини і його довжина до стиснення для /Length1. */
+    static final class Subset {
+        final String tag;
+        final byte[] program;
+        final int length;
+
+        Subset(String tag, byte[] program, int length) {
+            this.tag = tag;
+            this.program = program;
+            this.length = length;
+        }
+    }
+}
+
+/** З TrueType-шрифтом текст пишеться гліфами через Type0/Identity-H, без нього — Helvetica з транслітерацією. */
+class SimplePdfWriter {
+    private static final int PAGE_WIDTH = 595;
+    private static final int PAGE_HEIGHT = 842;
+    private static final int FONT_SIZE = 12;
+    private static final int LEADING = 14;
+    private static final int LEFT = 50;
+    private static final int TOP = 790;
+    private static final int BOTTOM = 50;
+    private static final int LINES_PER_PAGE = (TOP - BOTTOM) / LEADING + 1;
+
+    private static final int CATALOG_OBJ = 1;
+    private static final int PAGES_OBJ = 2;
+    private static final int FONT_OBJ = 3;
+    private static final int FIRST_PAGE_OBJ = 4;
+
+    private static final String CYRILLIC_UPPER = "АБВГҐДЕЄЖЗИІЇЙКЛМНОПРСТУФХЦЧШЩЮЯЬ";
+    private static final String CYRILLIC_LOWER = "абвгґдеєжзиіїйклмнопрстуфхцчшщюяь";
+    private static final String[] LATIN_UPPER = {
+            "A", "B", "V", "H", "G", "D", "E", "Ye", "Zh", "Z", "Y", "I", "Yi", "Y", "K", "L", "M",
+            "N", "O", "P", "R", "S", "T", "U", "F", "Kh", "Ts", "Ch", "Sh", "Shch", "Yu", "Ya", ""
+    };
+    private static final String[] LATIN_LOWER = {
+            "a", "b", "v", "h", "g", "d", "e", "ie", "zh", "z", "y", "i", "i", "i", "k", "l", "m",
+            "n", "o", "p", "r", "s", "t", "u", "f", "kh", "ts", "ch", "sh", "shch", "iu", "ia", ""
+    };
+    private static final byte[][] ENCODING = buildEncoding();
+    private static final int MAX_ENCODED_CHAR = 4;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final WritableByteChannel channel;
+    private final TrueTypeFont font;
+    private final BitSet usedGlyphs = new BitSet();
+    private int[] unicodeOfGlyph;
+    private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+    private long position;
+
+    private long[] offsets = new long[16];
+    private int objectCount = FIRST_PAGE_OBJ - 1;
+    private int pageCount;
+
+    private byte[] page = new byte[8 * 1024];
+    private int pageLength;
+    private int pageLines = -1;
+
+    SimplePdfWriter(WritableByteChannel channel) throws IOException {
+        this(channel, TrueTypeFont.system());
+    }
+
+    /** font == null — Helvetica з транслітерацією. */
+    SimplePdfWriter(WritableByteChannel channel, TrueTypeFont font) throws IOException {
+        this.channel = channel;
+        this.font = font;
+        writeAscii("%PDF-1.4\n");
+        if (font == null) {
+            beginObject(FONT_OBJ);
+            writeAscii("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n");
+        } else {
+            unicodeOfGlyph = new int[font.glyphCount()];
+        }
+    }
+
+    SimplePdfWriter(OutputStream stream) throws IOException {
+        this(Channels.newChannel(stream));
+    }
+
+    public static void writePdf(Path path, String content) throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            print(new SimplePdfWriter(file), content);
+        }
+        Metrics.PDF_WRITE.record(System.nanoTime() - started);
+    }
+
+    /** Той самий документ, що й writePdf, але в пам'яті — для кешу готових звітів. */
+    static byte[] render(String content) throws IOException {
+        long started = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        print(new SimplePdfWriter(bytes), content);
+        Metrics.PDF_WRITE.record(System.nanoTime() - started);
+        return bytes.toByteArray();
+    }
+
+    private static void print(SimplePdfWriter writer, String content) throws IOException {
+        for (Iterator<String> it = content.lines().iterator(); it.hasNext(); ) {
+            writer.println(it.next());
+        }
+        writer.finish();
+    }
+
+    void println(String line) throws IOException {
+        if (pageLines == LINES_PER_PAGE) {
+            endPage();
+        }
+        if (pageLines < 0) {
+            beginPage();
+        }
+        if (font == null) {
+            pageByte('(');
+            encodeText(line);
+            pageAscii(") Tj\nT*\n");
+        } else {
+            pageByte('<');
+            encodeGlyphs(line);
+            pageAscii("> Tj\nT*\n");
+        }
+        pageLines++;
+    }
+
+    void finish() throws IOException {
+        if (pageLines < 0 && pageCount == 0) {
+            beginPage();
+        }
+        if (pageLines >= 0) {
+            endPage();
+        }
+        if (font != null) {
+            writeEmbeddedFont();
+        }
+
+        beginObject(PAGES_OBJ);
+        writeAscii("<< /Type /Pages /Count ");
+        writeLong(pageCount);
+        writeAscii(" /Kids [");
+        for (int p = 0; p < pageCount; p++) {
+            if (p > 0) {
+                writeAscii(" ");
+            }
+            writeLong(FIRST_PAGE_OBJ + 2L * p + 1);
+            writeAscii(" 0 R");
+        }
+        writeAscii("] >>\nendobj\n");
+
+        beginObject(CATALOG_OBJ);
+        writeAscii("<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+
+        long xrefOffset = position;
+        int size = objectCount + 1;
+        writeAscii("xref\n0 ");
+        writeLong(size);
+        writeAscii("\n0000000000 65535 f \n");
+        for (int obj = 1; obj < size; obj++) {
+            writePadded(offsets[obj], 10);
+            writeAscii(" 00000 n \n");
+        }
+        writeAscii("trailer\n<< /Size ");
+        writeLong(size);
+        writeAscii(" /Root 1 0 R >>\nstartxref\n");
+        writeLong(xrefOffset);
+        writeAscii("\n%%EOF\n");
+        flush();
+    }
+
+    private void beginPage() {
+        pageLength = 0;
+        pageLines = 0;
+        pageAscii("BT\n/F1 " + FONT_SIZE + " Tf\n" + LEFT + " " + TOP + " Td\n" + LEADING + " TL\n");
+    }
+
+    private void endPage() throws IOException {
+        pageAscii("ET");
+        int contentObj = FIRST_PAGE_OBJ + 2 * pageCount;
+
+        beginObject(contentObj);
+        writeAscii("<< /Length ");
+        writeLong(pageLength);
+        writeAscii(" >>\nstream\n");
+        write(page, 0, pageLength);
+        writeAscii("\nendstream\nendobj\n");
+
+        beginObject(contentObj + 1);
+        writeAscii("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + PAGE_WIDTH + " " + PAGE_HEIGHT
+                + "] /Resources << /Font << /F1 3 0 R >> >> /Contents ");
+        writeLong(contentObj);
+        writeAscii(" 0 R >>\nendobj\n");
+
+        pageCount++;
+        pageLines = -1;
+    }
+
+    private void beginObject(int number) throws IOException {
+        if (number >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(number + 1, offsets.length * 2));
+        }
+        offsets[number] = position;
+        objectCount = Math.max(objectCount, number);
+        writeLong(number);
+        writeAscii(" 0 obj\n");
+    }
+
+    private void encodeText(String line) {
+        ensurePageCapacity(line.length() * MAX_ENCODED_CHAR);
+        byte[] buf = page;
+        int pos = pageLength;
+        for (int i = 0, n = line.length(); i < n; i++) {
+            char c = line.charAt(i);
+            if (c >= ENCODING.length) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(line.charAt(i + 1))) {
+                    i++;
+                }
+                buf[pos++] = '?';
+                continue;
+            }
+            byte[] encoded = ENCODING[c];
+            for (byte b : encoded) {
+                buf[pos++] = b;
+            }
+        }
+        pageLength = pos;
+    }
+
+    private void encodeGlyphs(String line) {
+        ensurePageCapacity(line.length() * 4);
+        byte[] buf = page;
+        int pos = pageLength;
+        for (int i = 0, n = line.length(); i < n; ) {
+            int c = line.codePointAt(i);
+            i += Character.charCount(c);
+            int glyph = font.glyph(c);
+            if (!font.hasGlyph(c)) {
+                c = '?';
+            }
+            if (unicodeOfGlyph[glyph] == 0) {
+                unicodeOfGlyph[glyph] = c;
+                usedGlyphs.set(glyph);
+            }
+            buf[pos++] = HEX[glyph >>> 12 & 0xF];
+            buf[pos++] = HEX[glyph >>> 8 & 0xF];
+            buf[pos++] = HEX[glyph >>> 4 & 0xF];
+            buf[pos++] = HEX[glyph & 0xF];
+        }
+        pageLength = pos;
+    }
+
+    // Образ підмножини береться з кешу шрифту; тут лише ширини й ToUnicode гліфів цього звіту.
+    private void writeEmbeddedFont() throws IOException {
+        TrueTypeFont.Subset subset = font.subset(usedGlyphs);
+        String baseFont = "/" + subset.tag + "+" + font.name;
+        int cidFontObj = objectCount + 1;
+        int descriptorObj = cidFontObj + 1;
+        int fontFileObj = cidFontObj + 2;
+        int toUnicodeObj = cidFontObj + 3;
+
+        beginObject(FONT_OBJ);
+        writeAscii("<< /Type /Font /Subtype /Type0 /BaseFont " + baseFont + " /Encoding /Identity-H /DescendantFonts ["
+                + cidFontObj + " 0 R] /ToUnicode " + toUnicodeObj + " 0 R >>\nendobj\n");
+
+        StringBuilder widths = new StringBuilder();
+        for (int g = usedGlyphs.nextSetBit(0); g >= 0; ) {
+            widths.append(g).append(" [");
+            int run = g;
+            do {
+                widths.append(run == g ? "" : " ").append(font.width(run));
+                run++;
+            } while (usedGlyphs.get(run));
+            widths.append("] ");
+            g = usedGlyphs.nextSetBit(run);
+        }
+        beginObject(cidFontObj);
+        writeAscii("<< /Type /Font /Subtype /CIDFontType2 /BaseFont " + baseFont
+                + " /CIDSystemInfo << /Registry (Adobe) /Ordering (Identity) /Supplement 0 >> /FontDescriptor "
+                + descriptorObj + " 0 R /CIDToGIDMap /Identity /W [" + widths + "] >>\nendobj\n");
+
+        beginObject(descriptorObj);
+        writeAscii("<< /Type /FontDescriptor /FontName " + baseFont + " /Flags 32 /FontBBox [" + font.bbox[0] + " "
+                + font.bbox[1] + " " + font.bbox[2] + " " + font.bbox[3] + "] /ItalicAngle 0 /Ascent " + font.ascent
+                + " /Descent " + font.descent + " /CapHeight " + font.ascent + " /StemV 80 /FontFile2 "
+                + fontFileObj + " 0 R >>\nendobj\n");
+
+        beginObject(fontFileObj);
+        writeAscii("<< /Length " + subset.program.length + " /Length1 " + subset.length
+                + " /Filter /FlateDecode >>\nstream\n");
+        write(subset.program, 0, subset.program.length);
+        writeAscii("\nendstream\nendobj\n");
+
+        StringBuilder cmap = new StringBuilder("/CIDInit /ProcSet findresource begin\n12 dict begin\nbegincmap\n"
+                + "/CIDSystemInfo << /Registry (Adobe) /Ordering (UCS) /Supplement 0 >> def\n"
+                + "/CMapName /Adobe-Identity-UCS def\n/CMapType 2 def\n"
+                + "1 begincodespacerange\n<0000> <FFFF>\nendcodespacerange\n");
+        int remaining = usedGlyphs.cardinality();
+        for (int g = usedGlyphs.nextSetBit(0); g >= 0; ) {
+            int block = Math.min(remaining, 100);
+            remaining -= block;
+            cmap.append(block).append(" beginbfchar\n");
+            for (int i = 0; i < block; i++, g = usedGlyphs.nextSetBit(g + 1)) {
+                appendHex(cmap.append('<'), g).append("> <");
+                for (char unit : Character.toChars(unicodeOfGlyph[g])) {
+                    appendHex(cmap, unit);
+                }
+                cmap.append(">\n");
+            }
+            cmap.append("endbfchar\n");
+        }
+        cmap.append("endcmap\nCMapName currentdict /CMap defineresource pop\nend\nend");
+        beginObject(toUnicodeObj);
+        writeAscii("<< /Length " + cmap.length() + " >>\nstream\n");
+        writeAscii(cmap.toString());
+        writeAscii("\nendstream\nendobj\n");
+    }
+
+    private static StringBuilder appendHex(StringBuilder sb, int value) {
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            sb.append((char) HEX[value >>> shift & 0xF]);
+        }
+        return sb;
+    }
+
+    private static byte[][] buildEncoding() {
+        byte[][] table = new byte[0x500][];
+        byte[] unmappable = {'?'};
+        for (int c = 0; c < table.length; c++) {
+            table[c] = c < 0x100 ? new byte[]{(byte) c} : unmappable;
+        }
+        table['\\'] = new byte[]{'\\', '\\'};
+        table['('] = new byte[]{'\\', '('};
+        table[')'] = new byte[]{'\\', ')'};
+        table['\''] = new byte[0];
+        for (int i = 0; i < CYRILLIC_UPPER.length(); i++) {
+            table[CYRILLIC_UPPER.charAt(i)] = LATIN_UPPER[i].getBytes(StandardCharsets.ISO_8859_1);
+            table[CYRILLIC_LOWER.charAt(i)] = LATIN_LOWER[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return table;
+    }
+
+    private void pageByte(int b) {
+        ensurePageCapacity(1);
+        page[pageLength++] = (byte) b;
+    }
+
+    private void pageAscii(String s) {
+        ensurePageCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            page[pageLength++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void ensurePageCapacity(int extra) {
+        if (pageLength + extra > page.length) {
+            page = Arrays.copyOf(page, Math.max(pageLength + extra, page.length * 2));
+        }
+    }
+
+    private void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            if (!out.hasRemaining()) {
+                flush();
+            }
+            out.put((byte) s.charAt(i));
+        }
+        position += s.length();
+    }
+
+    private void writeLong(long value) throws IOException {
+        writePadded(value, 1);
+    }
+
+    private void writePadded(long value, int width) throws IOException {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = digits; i < width; i++) {
+            writeByte('0');
+        }
+        long divisor = 1;
+        for (int i = 1; i < digits; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            writeByte((int) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (!out.hasRemaining()) {
+            flush();
+        }
+        out.put((byte) b);
+        position++;
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!out.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(length, out.remaining());
+            out.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+            position += n;
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,39 @@
+interface StoreJournal {
+    StoreJournal NONE = new StoreJournal() {
+    };
+
+    default long userRegistered(User user) {
+        return 0;
+    }
+
+    default long eventCreated(int eventId, String name) {
+        return 0;
+    }
+
+    default long songAdded(int eventId, Song song) {
+        return 0;
+    }
+
+    default long songDeleted(int eventId, int songId) {
+        return 0;
+    }
+
+    default long ballotCast(int eventId, int userId, int[] songIds) {
+        return 0;
+    }
+
+    default long voteLimitChanged(int eventId, int limit) {
+        return 0;
+    }
+
+    default long votingClosed(int eventId) {
+        return 0;
+    }
+
+    default long songVotesReset(int eventId, int songId) {
+        return 0;
+    }
+
+    default void sync(long seq) {
+    }
+}
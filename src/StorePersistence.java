@@ -0,0 +1,126 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/** Знімок покриває всі журнали до свого покоління включно; покриті журнали видаляються. */
+final class StorePersistence implements Closeable {
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String JOURNAL = "journal.bin";
+    private static final Pattern ROTATED = Pattern.compile("journal-(\\d+)\\.bin");
+
+    private final Path dir;
+    private final DataStore store;
+    private final ScheduledExecutorService scheduler;
+    private VoteJournal journal;
+
+    private StorePersistence(Path dir, DataStore store, VoteJournal journal, long snapshotPeriodMinutes) {
+        this.dir = dir;
+        this.store = store;
+        this.journal = journal;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (snapshotPeriodMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::periodicSnapshot, snapshotPeriodMinutes, snapshotPeriodMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    static StorePersistence open(Path dir, DataStore store, long snapshotPeriodMinutes) throws IOException {
+        Files.createDirectories(dir);
+        long covered = 0;
+        Path snapshotFile = dir.resolve(SNAPSHOT);
+        if (Files.exists(snapshotFile)) {
+            StoreSnapshot snapshot = StoreSnapshot.read(snapshotFile);
+            store.restoreSnapshot(snapshot);
+            covered = snapshot.journalGeneration;
+        }
+        Path journalFile = dir.resolve(JOURNAL);
+        for (Map.Entry<Long, Path> rotated : rotatedJournals(dir).entrySet()) {
+            if (rotated.getKey() <= covered) {
+                Files.delete(rotated.getValue());
+            } else {
+                covered = VoteJournal.replay(rotated.getValue(), store);
+            }
+        }
+        VoteJournal journal = VoteJournal.open(journalFile, store, covered);
+        return new StorePersistence(dir, store, journal, snapshotPeriodMinutes);
+    }
+
+    synchronized void snapshot() throws IOException {
+        long started = System.nanoTime();
+        StoreSnapshot snapshot;
+        try {
+            snapshot = store.exclusive(() -> {
+                long covered = journal.generation();
+                StoreSnapshot captured = store.captureSnapshot(covered);
+                try {
+                    journal.close();
+                    Files.move(dir.resolve(JOURNAL), dir.resolve("journal-" + covered + ".bin"), StandardCopyOption.ATOMIC_MOVE);
+                    journal = VoteJournal.open(dir.resolve(JOURNAL), store, covered);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return captured;
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        Path temp = dir.resolve(SNAPSHOT + ".tmp");
+        snapshot.write(temp);
+        Files.move(temp, dir.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (Map.Entry<Long, Path> rotated : rotatedJournals(dir).entrySet()) {
+            if (rotated.getKey() <= snapshot.journalGeneration) {
+                Files.delete(rotated.getValue());
+            }
+        }
+        Metrics.SNAPSHOT.record(System.nanoTime() - started);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        scheduler.shutdownNow();
+        if (journal.recordCount() > 0) {
+            snapshot();
+        }
+        journal.close();
+    }
+
+    private synchronized void periodicSnapshot() {
+        if (journal.recordCount() == 0) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Не вдалося зберегти знімок стану: " + ex.getMessage());
+        }
+    }
+
+    private static SortedMap<Long, Path> rotatedJournals(Path dir) throws IOException {
+        SortedMap<Long, Path> result = new TreeMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                Matcher matcher = ROTATED.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    result.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return result;
+    }
+}
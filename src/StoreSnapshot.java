@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/** Колонки примітивів і рядки UTF-8 з префіксом довжини; у кінці CRC32 усього файлу. */
+final class StoreSnapshot {
+    private static final int MAGIC = 0x434F4E53;
+    private static final int VERSION = 3;
+
+    final long journalGeneration;
+    final User[] users;
+    final EventState[] events;
+
+    StoreSnapshot(long journalGeneration, User[] users, EventState[] events) {
+        this.journalGeneration = journalGeneration;
+        this.users = users;
+        this.events = events;
+    }
+
+    static final class EventState {
+        final int id;
+        final String name;
+        final int maxVoteLimit;
+        final int ballotLimit;
+        final boolean votingClosed;
+        final int[] votedUserIds;
+        final Song[] songs;
+        final int[] tallies;
+        final int[] voteUserIds;
+        final int[] voteSongIds;
+
+        EventState(int id, String name, int maxVoteLimit, int ballotLimit, boolean votingClosed, int[] votedUserIds,
+                   Song[] songs, int[] tallies, int[] voteUserIds, int[] voteSongIds) {
+            this.id = id;
+            this.name = name;
+            this.maxVoteLimit = maxVoteLimit;
+            this.ballotLimit = ballotLimit;
+            this.votingClosed = votingClosed;
+            this.votedUserIds = votedUserIds;
+            this.songs = songs;
+            this.tallies = tallies;
+            this.voteUserIds = voteUserIds;
+            this.voteSongIds = voteSongIds;
+        }
+    }
+
+    void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(journalGeneration);
+
+            out.putInt(users.length);
+            for (User user : users) {
+                out.putInt(user.id);
+            }
+            for (User user : users) {
+                out.put(user.role.ordinal());
+            }
+            for (User user : users) {
+                out.putString(user.login);
+                out.putString(user.password);
+            }
+
+            out.putInt(events.length);
+            for (EventState event : events) {
+                out.putInt(event.id);
+                out.putString(event.name);
+                out.putInt(event.maxVoteLimit);
+                out.putInt(event.ballotLimit);
+                out.put(event.votingClosed ? 1 : 0);
+                out.putInt(event.votedUserIds.length);
+                out.putInts(event.votedUserIds);
+
+                out.putInt(event.songs.length);
+                for (Song song : event.songs) {
+                    out.putInt(song.id);
+                }
+                for (Song song : event.songs) {
+                    out.putInt(song.durationMinutes);
+                }
+                out.putInts(event.tallies);
+                for (Song song : event.songs) {
+                    out.putString(song.title);
+                    out.putString(song.artist);
+                }
+
+                out.putInt(event.voteUserIds.length);
+                out.putInts(event.voteUserIds);
+                out.putInts(event.voteSongIds);
+            }
+            out.finish();
+            channel.force(true);
+        }
+    }
+
+    static StoreSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < 24 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Невідомий формат знімка: " + file);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(in.slice(0, (int) size - 4));
+            if ((int) crc.getValue() != in.getInt((int) size - 4)) {
+                throw new IOException("Пошкоджений знімок: " + file);
+            }
+
+            long generation = in.getLong();
+            User[] users = readUsers(in);
+            EventState[] events = new EventState[in.getInt()];
+            for (int i = 0; i < events.length; i++) {
+                int id = in.getInt();
+                String name = VoteJournal.readString(in);
+                int limit = in.getInt();
+                int ballotLimit = in.getInt();
+                boolean closed = in.get() != 0;
+                int[] votedUserIds = readInts(in, in.getInt());
+                events[i] = readEvent(in, id, name, limit, ballotLimit, closed, votedUserIds);
+            }
+            return new StoreSnapshot(generation, users, events);
+        }
+    }
+
+    private static User[] readUsers(ByteBuffer in) {
+        int userCount = in.getInt();
+        int[] userIds = readInts(in, userCount);
+        byte[] roleOrdinals = new byte[userCount];
+        in.get(roleOrdinals);
+        User[] users = new User[userCount];
+        Role[] roles = Role.values();
+        for (int i = 0; i < userCount; i++) {
+            String login = VoteJournal.readString(in);
+            String password = VoteJournal.readString(in);
+            users[i] = new User(userIds[i], login, password, roles[roleOrdinals[i]]);
+        }
+        return users;
+    }
+
+    private static EventState readEvent(ByteBuffer in, int id, String name, int limit, int ballotLimit,
+                                        boolean closed, int[] votedUserIds) {
+        int songCount = in.getInt();
+        int[] songIds = readInts(in, songCount);
+        int[] durations = readInts(in, songCount);
+        int[] tallies = readInts(in, songCount);
+        Song[] songs = new Song[songCount];
+        for (int i = 0; i < songCount; i++) {
+            String title = VoteJournal.readString(in);
+            String artist = VoteJournal.readString(in);
+            songs[i] = new Song(songIds[i], title, artist, durations[i]);
+        }
+
+        int voteCount = in.getInt();
+        int[] voteUserIds = readInts(in, voteCount);
+        int[] voteSongIds = readInts(in, voteCount);
+        return new EventState(id, name, limit, ballotLimit, closed, votedUserIds, songs, tallies, voteUserIds, voteSongIds);
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * 4);
+        return values;
+    }
+
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private final CRC32 crc = new CRC32();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void put(int b) throws IOException {
+            ensure(1);
+            buffer.put((byte) b);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putInts(int[] values) throws IOException {
+            int offset = 0;
+            while (offset < values.length) {
+                ensure(4);
+                int n = Math.min(values.length - offset, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, offset, n);
+                buffer.position(buffer.position() + n * 4);
+                offset += n;
+            }
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        void finish() throws IOException {
+            drain();
+            ByteBuffer tail = ByteBuffer.allocate(4).putInt((int) crc.getValue());
+            tail.flip();
+            while (tail.hasRemaining()) {
+                channel.write(tail);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
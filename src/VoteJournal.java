@@ -0,0 +1,451 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/** Запис: [int довжина][byte тип][дані][int CRC32]; пачки всіх смуг пише окремий потік одним force. */
+final class VoteJournal implements StoreJournal, Closeable {
+    private static final int MAGIC = 0x434F4E4A;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte USER_REGISTERED = 1;
+    private static final byte SONG_ADDED = 2;
+    private static final byte SONG_DELETED = 3;
+    private static final byte BALLOT_CAST = 4;
+    private static final byte VOTE_LIMIT_CHANGED = 5;
+    private static final byte VOTING_CLOSED = 6;
+    private static final byte SONG_VOTES_RESET = 7;
+    private static final byte EVENT_CREATED = 8;
+
+    // Смуга 0 — облікові записи, решта — події за id; номер запису несе в молодших бітах номер смуги.
+    private static final int EVENT_STRIPES = 16;
+    private static final int STRIPE_BITS = 5;
+
+    private final FileChannel channel;
+    private final long generation;
+    private final Thread flusher;
+    private final Stripe[] stripes = new Stripe[EVENT_STRIPES + 1];
+
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    private static final class Stripe {
+        final int index;
+        final CRC32 crc = new CRC32();
+        ByteBuffer pending = ByteBuffer.allocate(16 * 1024);
+        ByteBuffer writing = ByteBuffer.allocate(16 * 1024);
+        long appendedSeq;
+        long durableSeq;
+        boolean closed;
+
+        Stripe(int index) {
+            this.index = index;
+        }
+    }
+
+    private VoteJournal(FileChannel channel, long generation) {
+        this.channel = channel;
+        this.generation = generation;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(i);
+        }
+        this.flusher = new Thread(this::flushLoop, "vote-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    static VoteJournal open(Path file, DataStore store, long coveredGeneration) throws IOException {
+        return open(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE), store, coveredGeneration);
+    }
+
+    static VoteJournal open(FileChannel channel, DataStore store, long coveredGeneration) throws IOException {
+        try {
+            long generation = coveredGeneration + 1;
+            long end = 0;
+            if (channel.size() > 0) {
+                long fileGeneration = readHeader(channel).getLong(8);
+                if (fileGeneration > coveredGeneration) {
+                    generation = fileGeneration;
+                    end = replay(channel, store);
+                }
+            }
+            if (end == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(generation);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                end = HEADER_SIZE;
+            }
+            channel.truncate(end);
+            channel.position(end);
+            channel.force(true);
+            VoteJournal journal = new VoteJournal(channel, generation);
+            store.attachJournal(journal);
+            return journal;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    static long replay(Path file, DataStore store) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long generation = readHeader(channel).getLong(8);
+            replay(channel, store);
+            return generation;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = channel.read(header, header.position());
+        }
+        if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Невідомий формат журналу: " + channel.size() + " байт");
+        }
+        return header;
+    }
+
+    private static long replay(FileChannel channel, DataStore store) throws IOException {
+        MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        in.position(HEADER_SIZE);
+        CRC32 check = new CRC32();
+        while (in.remaining() >= 4) {
+            int start = in.position();
+            int length = in.getInt();
+            if (length < 1 || length > in.remaining() - 4) {
+                return start;
+            }
+            check.reset();
+            check.update(in.slice(in.position(), length));
+            if ((int) check.getValue() != in.getInt(in.position() + length)) {
+                return start;
+            }
+            int next = in.position() + length + 4;
+            apply(in, store);
+            in.position(next);
+        }
+        return in.position();
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long recordCount() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.appendedSeq;
+            }
+        }
+        return count;
+    }
+
+    private static void apply(ByteBuffer in, DataStore store) {
+        byte type = in.get();
+        switch (type) {
+            case USER_REGISTERED: {
+                int id = in.getInt();
+                Role role = Role.values()[in.get()];
+                String login = readString(in);
+                String password = readString(in);
+                store.applyUser(new User(id, login, password, role));
+                break;
+            }
+            case EVENT_CREATED: {
+                int id = in.getInt();
+                store.applyEvent(id, readString(in));
+                break;
+            }
+            default:
+                apply(type, in, eventOf(in, store));
+        }
+    }
+
+    private static ConcertEvent eventOf(ByteBuffer in, DataStore store) {
+        int eventId = in.getInt();
+        ConcertEvent event = store.event(eventId);
+        if (event == null) {
+            throw new IllegalStateException("Запис журналу для невідомої події: " + eventId);
+        }
+        return event;
+    }
+
+    private static void apply(byte type, ByteBuffer in, ConcertEvent event) {
+        switch (type) {
+            case SONG_ADDED: {
+                int id = in.getInt();
+                int duration = in.getInt();
+                String title = readString(in);
+                String artist = readString(in);
+                event.applySong(new Song(id, title, artist, duration));
+                break;
+            }
+            case SONG_DELETED:
+                event.applyDeleteSong(in.getInt());
+                break;
+            case BALLOT_CAST: {
+                int userId = in.getInt();
+                int[] songIds = new int[in.getInt()];
+                for (int i = 0; i < songIds.length; i++) {
+                    songIds[i] = in.getInt();
+                }
+                event.applyBallot(userId, songIds);
+                break;
+            }
+            case VOTE_LIMIT_CHANGED:
+                event.applyVoteLimit(in.getInt());
+                break;
+            case VOTING_CLOSED:
+                event.applyVotingClosed();
+                break;
+            case SONG_VOTES_RESET:
+                event.applyResetVotes(in.getInt());
+                break;
+            default:
+                throw new IllegalStateException("Невідомий тип запису журналу: " + type);
+        }
+    }
+
+    @Override
+    public long userRegistered(User user) {
+        byte[] login = user.login.getBytes(StandardCharsets.UTF_8);
+        byte[] password = user.password.getBytes(StandardCharsets.UTF_8);
+        Stripe stripe = stripes[0];
+        synchronized (stripe) {
+            int start = begin(stripe, USER_REGISTERED, 13 + login.length + password.length);
+            stripe.pending.putInt(user.id).put((byte) user.role.ordinal());
+            stripe.pending.putInt(login.length).put(login);
+            stripe.pending.putInt(password.length).put(password);
+            return end(stripe, start);
+        }
+    }
+
+    @Override
+    public long eventCreated(int eventId, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        Stripe stripe = stripeOf(eventId);
+        synchronized (stripe) {
+            int start = begin(stripe, EVENT_CREATED, 8 + bytes.length);
+            stripe.pending.putInt(eventId);
+            stripe.pending.putInt(bytes.length).put(bytes);
+            return end(stripe, start);
+        }
+    }
+
+    @Override
+    public long songAdded(int eventId, Song song) {
+        byte[] title = song.title.getBytes(StandardCharsets.UTF_8);
+        byte[] artist = song.artist.getBytes(StandardCharsets.UTF_8);
+        Stripe stripe = stripeOf(eventId);
+        synchronized (stripe) {
+            int start = begin(stripe, SONG_ADDED, 20 + title.length + artist.length);
+            stripe.pending.putInt(eventId).putInt(song.id).putInt(song.durationMinutes);
+            stripe.pending.putInt(title.length).put(title);
+            stripe.pending.putInt(artist.length).put(artist);
+            return end(stripe, start);
+        }
+    }
+
+    @Override
+    public long songDeleted(int eventId, int songId) {
+        return eventRecord(SONG_DELETED, eventId, songId);
+    }
+
+    @Override
+    public long ballotCast(int eventId, int userId, int[] songIds) {
+        Stripe stripe = stripeOf(eventId);
+        synchronized (stripe) {
+            int start = begin(stripe, BALLOT_CAST, 12 + 4 * songIds.length);
+            stripe.pending.putInt(eventId).putInt(userId).putInt(songIds.length);
+            for (int songId : songIds) {
+                stripe.pending.putInt(songId);
+            }
+            return end(stripe, start);
+        }
+    }
+
+    @Override
+    public long voteLimitChanged(int eventId, int limit) {
+        return eventRecord(VOTE_LIMIT_CHANGED, eventId, limit);
+    }
+
+    @Override
+    public long votingClosed(int eventId) {
+        Stripe stripe = stripeOf(eventId);
+        synchronized (stripe) {
+            int start = begin(stripe, VOTING_CLOSED, 4);
+            stripe.pending.putInt(eventId);
+            return end(stripe, start);
+        }
+    }
+
+    @Override
+    public long songVotesReset(int eventId, int songId) {
+        return eventRecord(SONG_VOTES_RESET, eventId, songId);
+    }
+
+    private long eventRecord(byte type, int eventId, int value) {
+        Stripe stripe = stripeOf(eventId);
+        synchronized (stripe) {
+            int start = begin(stripe, type, 8);
+            stripe.pending.putInt(eventId).putInt(value);
+            return end(stripe, start);
+        }
+    }
+
+    @Override
+    public void sync(long seq) {
+        Stripe stripe = stripes[(int) (seq & ((1 << STRIPE_BITS) - 1))];
+        long target = seq >>> STRIPE_BITS;
+        boolean interrupted = false;
+        synchronized (stripe) {
+            while (stripe.durableSeq < target) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Не вдалося записати журнал", failure);
+                }
+                try {
+                    stripe.wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        markClosed();
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void markClosed() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.closed = true;
+            }
+        }
+        closed = true;
+    }
+
+    private Stripe stripeOf(int eventId) {
+        return stripes[1 + (eventId & (EVENT_STRIPES - 1))];
+    }
+
+    private int begin(Stripe stripe, byte type, int payload) {
+        if (stripe.closed) {
+            throw new IllegalStateException("Журнал закрито");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Не вдалося записати журнал", failure);
+        }
+        int needed = 4 + 1 + payload + 4;
+        ByteBuffer pending = stripe.pending;
+        if (pending.remaining() < needed) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            bigger.put(pending);
+            stripe.pending = pending = bigger;
+        }
+        int start = pending.position();
+        pending.putInt(0).put(type);
+        return start;
+    }
+
+    private long end(Stripe stripe, int start) {
+        ByteBuffer pending = stripe.pending;
+        int length = pending.position() - start - 4;
+        pending.putInt(start, length);
+        stripe.crc.reset();
+        stripe.crc.update(pending.array(), start + 4, length);
+        pending.putInt((int) stripe.crc.getValue());
+        LockSupport.unpark(flusher);
+        return ++stripe.appendedSeq << STRIPE_BITS | stripe.index;
+    }
+
+    private void flushLoop() {
+        ByteBuffer[] batch = new ByteBuffer[stripes.length];
+        long[] targets = new long[stripes.length];
+        while (true) {
+            boolean closing = closed;
+            int batches = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    targets[stripe.index] = stripe.appendedSeq;
+                    if (stripe.pending.position() > 0) {
+                        ByteBuffer full = stripe.pending;
+                        stripe.pending = stripe.writing;
+                        stripe.writing = full;
+                        batch[batches++] = full.flip();
+                    }
+                }
+            }
+            if (batches == 0) {
+                if (closing) {
+                    return;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    markClosed();
+                }
+                continue;
+            }
+            try {
+                long started = System.nanoTime();
+                while (batch[batches - 1].hasRemaining()) {
+                    channel.write(batch, 0, batches);
+                }
+                channel.force(false);
+                Metrics.JOURNAL_FLUSH.record(System.nanoTime() - started);
+            } catch (IOException ex) {
+                failure = ex;
+                for (Stripe stripe : stripes) {
+                    synchronized (stripe) {
+                        stripe.notifyAll();
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < batches; i++) {
+                batch[i].clear();
+                batch[i] = null;
+            }
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    if (stripe.durableSeq < targets[stripe.index]) {
+                        stripe.durableSeq = targets[stripe.index];
+                        stripe.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,609 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** JSON API: /api/login, /api/events, /api/songs, /api/ballots, /api/tallies; подія — ?event=id. */
+final class VotingServer implements Closeable {
+    static final int MAX_BODY_BYTES = 1 << 20;
+    static final int MAX_BATCH = 1_000;
+    static final long SESSION_TTL_NANOS = TimeUnit.HOURS.toNanos(8);
+
+    private final DataStore store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<Integer, Session> sessionsByUser = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private VotingServer(DataStore store, HttpServer server, ExecutorService executor) {
+        this.store = store;
+        this.server = server;
+        this.executor = executor;
+        server.createContext("/api/login", exchange -> handle(exchange, "POST", this::login));
+        server.createContext("/api/events", exchange -> handle(exchange, "GET", this::events));
+        server.createContext("/api/songs", exchange -> handle(exchange, "GET", this::songs));
+        server.createContext("/api/ballots", exchange -> handle(exchange, "POST", this::ballots));
+        server.createContext("/api/tallies", exchange -> handle(exchange, "GET", this::tallies));
+        server.setExecutor(executor);
+    }
+
+    static VotingServer start(DataStore store, InetSocketAddress address, int platformThreads) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        VotingServer votingServer = new VotingServer(store, server, ListenerThreads.newExecutor(platformThreads));
+        server.start();
+        return votingServer;
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Endpoint {
+        String respond(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!path.equals(exchange.getHttpContext().getPath())) {
+                send(exchange, 404, error("Невідомий ресурс"));
+            } else if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                send(exchange, 405, error("Дозволено лише " + method));
+            } else {
+                send(exchange, 200, endpoint.respond(exchange));
+            }
+        } catch (ApiException ex) {
+            send(exchange, ex.status, error(ex.getMessage()));
+        } catch (RuntimeException ex) {
+            System.err.println("Помилка HTTP API " + exchange.getRequestURI().getPath() + ": " + ex);
+            send(exchange, 500, error("Внутрішня помилка"));
+        } catch (Error ex) {
+            send(exchange, 500, error("Внутрішня помилка"));
+            throw ex;
+        }
+    }
+
+    private String login(HttpExchange exchange) throws IOException {
+        Map<?, ?> body = asObject(readJson(exchange));
+        User user = store.findUser(stringField(body, "login"), stringField(body, "password"));
+        if (user == null) {
+            throw new ApiException(401, "Невірний логін або пароль");
+        }
+        ConcertEvent event = event(exchange);
+        String token = openSession(user);
+        StringBuilder sb = new StringBuilder("{\"token\":");
+        Json.quote(sb, token);
+        sb.append(",\"role\":\"").append(user.role).append("\",\"voted\":").append(event.hasVoted(user))
+                .append(",\"maxVoteLimit\":").append(event.maxVoteLimit()).append('}');
+        return sb.toString();
+    }
+
+    private String events(HttpExchange exchange) {
+        StringBuilder sb = new StringBuilder("{\"events\":[");
+        boolean first = true;
+        for (ConcertEvent event : store.events()) {
+            sb.append(first ? "" : ",").append("{\"id\":").append(event.id).append(",\"name\":");
+            Json.quote(sb, event.name);
+            sb.append(",\"maxVoteLimit\":").append(event.maxVoteLimit())
+                    .append(",\"votingClosed\":").append(event.isVotingClosed())
+                    .append(",\"songs\":").append(event.songs().size())
+                    .append(",\"ballots\":").append(event.ballotsAccepted()).append('}');
+            first = false;
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String songs(HttpExchange exchange) {
+        ConcertEvent event = event(exchange);
+        EventView view = event.view();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"event\":").append(event.id).append(",\"maxVoteLimit\":").append(view.maxVoteLimit)
+                .append(",\"votingClosed\":").append(view.votingClosed).append(",\"songs\":[");
+        for (int i = 0; i < view.songs.size(); i++) {
+            Song song = view.songs.get(i);
+            sb.append(i == 0 ? "" : ",").append("{\"id\":").append(song.id).append(",\"title\":");
+            Json.quote(sb, song.title);
+            sb.append(",\"artist\":");
+            Json.quote(sb, song.artist);
+            sb.append(",\"durationMinutes\":").append(song.durationMinutes)
+                    .append(",\"votes\":").append(view.votes[i]).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String ballots(HttpExchange exchange) throws IOException {
+        Object body = readJson(exchange);
+        List<?> batch = body instanceof List ? (List<?>) body : List.of(body);
+        if (batch.isEmpty() || batch.size() > MAX_BATCH) {
+            throw new ApiException(400, "Пакет має містити від 1 до " + MAX_BATCH + " бюлетенів");
+        }
+        String headerToken = bearerToken(exchange);
+        ConcertEvent defaultEvent = event(exchange);
+        String[] results = new String[batch.size()];
+        String[] errors = new String[batch.size()];
+        User[] users = new User[batch.size()];
+        ConcertEvent[] events = new ConcertEvent[batch.size()];
+        int[][] songIds = new int[batch.size()][];
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                Map<?, ?> ballot = asObject(batch.get(i));
+                Object token = ballot.containsKey("token") ? ballot.get("token") : headerToken;
+                users[i] = sessionUser(token);
+                if (users[i] == null) {
+                    results[i] = "UNAUTHORIZED";
+                } else if (users[i].role != Role.USER) {
+                    results[i] = "FORBIDDEN";
+                } else {
+                    events[i] = eventOf(ballot, defaultEvent);
+                    songIds[i] = songIds(ballot);
+                }
+            } catch (ApiException ex) {
+                results[i] = "INVALID";
+                errors[i] = ex.getMessage();
+            }
+        }
+        StringBuilder sb = new StringBuilder("{\"results\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (results[i] == null) {
+                try {
+                    results[i] = events[i].castBallot(users[i], songIds[i]).name();
+                } catch (UncheckedIOException ex) {
+                    System.err.println("Не вдалося записати бюлетень: " + ex.getMessage());
+                    results[i] = "STORAGE_ERROR";
+                    errors[i] = "Бюлетень не записано в журнал";
+                }
+            }
+            sb.append(i == 0 ? "" : ",").append("{\"result\":\"").append(results[i]).append('"');
+            if (errors[i] != null) {
+                sb.append(",\"error\":");
+                Json.quote(sb, errors[i]);
+            }
+            sb.append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String tallies(HttpExchange exchange) {
+        ConcertEvent event = event(exchange);
+        int top = intParameter(exchange, "top", Integer.MAX_VALUE);
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"event\":").append(event.id).append(",\"votingClosed\":").append(event.isVotingClosed())
+                .append(",\"tallies\":[");
+        boolean first = true;
+        for (Song song : event.topSongs(Math.max(0, top))) {
+            sb.append(first ? "" : ",").append("{\"id\":").append(song.id).append(",\"title\":");
+            Json.quote(sb, song.title);
+            sb.append(",\"votes\":").append(song.votes).append('}');
+            first = false;
+        }
+        return sb.append("]}").toString();
+    }
+
+    private ConcertEvent event(HttpExchange exchange) {
+        return findEvent(intParameter(exchange, "event", DataStore.DEFAULT_EVENT_ID));
+    }
+
+    private ConcertEvent eventOf(Map<?, ?> ballot, ConcertEvent defaultEvent) {
+        Object id = ballot.get("event");
+        if (id == null) {
+            return defaultEvent;
+        }
+        if (!(id instanceof Long) || (Long) id != ((Long) id).intValue()) {
+            throw new ApiException(400, "Некоректний ідентифікатор події: " + id);
+        }
+        return findEvent(((Long) id).intValue());
+    }
+
+    private ConcertEvent findEvent(int id) {
+        ConcertEvent event = store.event(id);
+        if (event == null) {
+            throw new ApiException(404, "Невідома подія: " + id);
+        }
+        return event;
+    }
+
+    private static int intParameter(HttpExchange exchange, String name, int defaultValue) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                String value = pair.substring(name.length() + 1);
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException ex) {
+                    throw new ApiException(400, "Некоректний параметр " + name + ": " + value);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static Object readJson(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Завеликий запит");
+        }
+        try {
+            return Json.parse(new String(body, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new ApiException(400, "Некоректний JSON: " + ex.getMessage());
+        }
+    }
+
+    private static Map<?, ?> asObject(Object value) {
+        if (!(value instanceof Map)) {
+            throw new ApiException(400, "Очікується JSON-об'єкт");
+        }
+        return (Map<?, ?>) value;
+    }
+
+    private static String stringField(Map<?, ?> object, String name) {
+        Object value = object.get(name);
+        if (!(value instanceof String)) {
+            throw new ApiException(400, "Поле \"" + name + "\" має бути рядком");
+        }
+        return (String) value;
+    }
+
+    private static int[] songIds(Map<?, ?> ballot) {
+        Object value = ballot.get("songs");
+        if (!(value instanceof List)) {
+            throw new ApiException(400, "Поле \"songs\" має бути масивом ідентифікаторів");
+        }
+        List<?> list = (List<?>) value;
+        int[] ids = new int[list.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Object id = list.get(i);
+            if (!(id instanceof Long) || (Long) id != ((Long) id).intValue()) {
+                throw new ApiException(400, "Некоректний ідентифікатор пісні: " + id);
+            }
+            ids[i] = ((Long) id).intValue();
+        }
+        return ids;
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+    }
+
+    /** Один токен на слухача: повторний вхід повертає чинний токен, після закінчення строку видає новий. */
+    private String openSession(User user) {
+        long now = System.nanoTime();
+        return sessionsByUser.compute(user.id, (id, current) -> {
+            if (current != null && current.expiresAt - now > 0) {
+                return current;
+            }
+            if (current != null) {
+                sessions.remove(current.token);
+            }
+            Session session = new Session(newToken(), user, now + SESSION_TTL_NANOS);
+            sessions.put(session.token, session);
+            return session;
+        }).token;
+    }
+
+    private User sessionUser(Object token) {
+        Session session = token instanceof String ? sessions.get(token) : null;
+        if (session == null) {
+            return null;
+        }
+        if (session.expiresAt - System.nanoTime() <= 0) {
+            sessions.remove(session.token, session);
+            sessionsByUser.remove(session.user.id, session);
+            return null;
+        }
+        return session.user;
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(32);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.quote(sb, message);
+        return sb.append('}').toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class Session {
+        final String token;
+        final User user;
+        final long expiresAt;
+
+        Session(String token, User user, long expiresAt) {
+            this.token = token;
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class ApiException extends RuntimeException {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
+
+/** Об'єкти — LinkedHashMap, масиви — ArrayList, цілі — Long, дробові — Double. */
+final class Json {
+    static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int pos;
+    private int depth;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipWhitespace();
+        if (json.pos != text.length()) {
+            throw json.error("зайві символи");
+        }
+        return value;
+    }
+
+    static void quote(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (pos >= text.length()) {
+            throw error("неочікуваний кінець");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        enter();
+        skipWhitespace();
+        if (peek('}')) {
+            pos++;
+            depth--;
+            return result;
+        }
+        while (true) {
+            skipWhitespace();
+            if (!peek('"')) {
+                throw error("очікується ключ");
+            }
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            result.put(key, value());
+            skipWhitespace();
+            if (peek(',')) {
+                pos++;
+            } else {
+                expect('}');
+                depth--;
+                return result;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> result = new ArrayList<>();
+        enter();
+        skipWhitespace();
+        if (peek(']')) {
+            pos++;
+            depth--;
+            return result;
+        }
+        while (true) {
+            result.add(value());
+            skipWhitespace();
+            if (peek(',')) {
+                pos++;
+            } else {
+                expect(']');
+                depth--;
+                return result;
+            }
+        }
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw error("вкладеність глибша за " + MAX_DEPTH);
+        }
+        pos++;
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (true) {
+            if (pos >= text.length()) {
+                throw error("незакритий рядок");
+            }
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= text.length()) {
+                throw error("незакритий рядок");
+            }
+            char escape = text.charAt(pos++);
+            switch (escape) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("некоректна послідовність \\u");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("некоректна послідовність \\u");
+                    }
+                    pos += 4;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append(escape);
+                    break;
+                default:
+                    throw error("некоректне екранування");
+            }
+        }
+    }
+
+    private Object number() {
+        int start = pos;
+        boolean fraction = false;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                fraction = true;
+            } else if (!(c >= '0' && c <= '9') && c != '-' && c != '+') {
+                break;
+            }
+            pos++;
+        }
+        String number = text.substring(start, pos);
+        try {
+            return fraction ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+        } catch (NumberFormatException ex) {
+            throw error("некоректне значення");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, pos)) {
+            throw error("некоректне значення");
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean peek(char c) {
+        return pos < text.length() && text.charAt(pos) == c;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) {
+            throw error("очікується '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " (позиція " + pos + ")");
+    }
+}